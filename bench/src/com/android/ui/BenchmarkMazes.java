@@ -0,0 +1,110 @@
+package com.android.ui;
+
+import java.util.Random;
+
+/**
+ * Shared setup for the benchmarks. Translates a size parameter into maze dimensions
+ * and prepares a MazeBuilder with a seeded random number generator such that
+ * every run works on exactly the same mazes.
+ * 
+ * A size parameter is either a skill level in [0,15] with dimensions and room count 
+ * taken from Maze.skill_x, skill_y, skill_rooms, or a custom size WIDTHxHEIGHT without rooms.
+ * @author adam
+ *
+ */
+public class BenchmarkMazes {
+	// seed for all random decisions during maze generation
+	static final long SEED = 20984390L;
+	// seed for the selection of viewer poses in the rendering benchmark
+	static final long POSE_SEED = 4711L;
+
+	final int width;
+	final int height;
+	final int rooms;
+	final int partct;
+
+	/**
+	 * Constructor
+	 * @param size skill level like "9" or custom size like "1000x1000"
+	 */
+	BenchmarkMazes(String size) {
+		int x = size.indexOf('x');
+		if (x < 0) {
+			int skill = Integer.parseInt(size);
+			width = Maze.skill_x[skill];
+			height = Maze.skill_y[skill];
+			rooms = Maze.skill_rooms[skill];
+			partct = Maze.skill_partct[skill];
+		} else {
+			width = Integer.parseInt(size.substring(0, x));
+			height = Integer.parseInt(size.substring(x+1));
+			rooms = 0;
+			// same ratio of partition iterations per cell as skill level 15
+			partct = (int) Math.min(Integer.MAX_VALUE, (long) width*height*Maze.skill_partct[15]/(Maze.skill_x[15]*Maze.skill_y[15]));
+		}
+	}
+
+	/**
+	 * Creates a builder of the given kind
+	 * @param name one of "falstad", "prim", "eller", "parallel", "kruskal", "division"
+	 * @return new builder
+	 */
+	static MazeBuilder newBuilder(String name) {
+		if ("falstad".equals(name))
+			return new MazeBuilderFalstad();
+		if ("prim".equals(name))
+			return new MazeBuilderPrim();
+		if ("eller".equals(name))
+			return new MazeBuilderEller();
+		if ("parallel".equals(name))
+			return new MazeBuilderParallel();
+		if ("kruskal".equals(name))
+			return new MazeBuilderKruskal();
+		if ("division".equals(name))
+			return new MazeBuilderDivision();
+		throw new IllegalArgumentException("unknown builder " + name);
+	}
+
+	/**
+	 * Gives the factory for a representation of cells
+	 * @param name one of "array", "compact", "mapped", "chunked", "bitset"
+	 * @return factory, null for the default array in Cells
+	 */
+	static Cells.Factory cellsFactory(String name) {
+		if ("array".equals(name))
+			return null;
+		if ("compact".equals(name))
+			return CompactCells.FACTORY;
+		if ("mapped".equals(name))
+			return MappedCells.FACTORY;
+		if ("chunked".equals(name))
+			return ChunkedCells.FACTORY;
+		if ("bitset".equals(name))
+			return BitsetCells.FACTORY;
+		throw new IllegalArgumentException("unknown cells " + name);
+	}
+
+	/**
+	 * Brings the builder into the state right before generate() is called in run():
+	 * cells are initialized and rooms are placed.
+	 * @param mb builder to prepare
+	 * @param maze maze that receives progress updates
+	 */
+	void prepare(MazeBuilder mb, Maze maze) {
+		mb.setup(maze, width, height, rooms, partct);
+		mb.random = new Random(SEED);
+		mb.colchange = mb.randNo(0, 255);
+		mb.cells.initialize();
+		mb.placeRooms();
+	}
+
+	/**
+	 * Creates a maze that accepts progress updates without printing warnings.
+	 */
+	static Maze newMaze() {
+		Maze maze = new Maze();
+		maze.init();
+		maze.state = Maze.STATE_GENERATING;
+		return maze;
+	}
+}
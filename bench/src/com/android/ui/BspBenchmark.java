@@ -0,0 +1,91 @@
+package com.android.ui;
+
+import java.util.Vector;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.BenchmarkParams;
+
+/**
+ * Measures the two phases of the BSP construction: genSegs extracts wall segments from the cells,
+ * genNodes partitions them into a BSP tree. 
+ * 
+ * genSegs only reads the cells and runs on the maze of the trial. genNodes marks segments as partitioned
+ * and needs a fresh segment list per invocation, the Segments state has a maze of its own for this
+ * and computes its segments before each invocation.
+ * A genNodes invocation takes about a millisecond or more from skill level 1 on, long enough for setup per invocation,
+ * at skill level 0 it takes some 50 microseconds and the numbers include some timer overhead.
+ * 
+ * Note that genNodes reports progress to the maze. The maze is kept for the whole trial 
+ * such that only the first invocations during warmup pay for the progress updates. 
+ * @author adam
+ *
+ */
+@State(Scope.Thread)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class BspBenchmark {
+
+	@Param({"0", "1", "2", "3", "4", "5", "6", "7", "8", "9", "10", "11", "12", "13", "14", "15", "500x500", "1000x1000"})
+	public String size;
+
+	@Param({"array", "bitset"})
+	public String cells;
+
+	MazeBuilder mb;
+
+	@Setup(Level.Trial)
+	public void setupTrial() {
+		mb = generated(size, cells);
+	}
+
+	/**
+	 * Gives a builder with a generated maze of the given size and representation of cells
+	 */
+	static MazeBuilder generated(String size, String cells) {
+		BenchmarkMazes mazes = new BenchmarkMazes(size);
+		MazeBuilder mb = new MazeBuilderFalstad();
+		mb.setCellsFactory(BenchmarkMazes.cellsFactory(cells));
+		mazes.prepare(mb, BenchmarkMazes.newMaze());
+		mb.generate();
+		return mb;
+	}
+
+	/**
+	 * A maze with a fresh segment list for each invocation of genNodes
+	 */
+	@State(Scope.Thread)
+	public static class Segments {
+		MazeBuilder mb;
+
+		@Setup(Level.Trial)
+		public void setupTrial(BenchmarkParams params) {
+			mb = generated(params.getParam("size"), params.getParam("cells"));
+		}
+
+		@Setup(Level.Invocation)
+		public void setupInvocation() {
+			mb.genSegs();
+			mb.partiters = 0;
+		}
+	}
+
+	@Benchmark
+	public Vector<Seg> genSegs() {
+		mb.genSegs();
+		return mb.seglist;
+	}
+
+	@Benchmark
+	public BSPNode genNodes(Segments fresh) {
+		return fresh.mb.genNodes();
+	}
+}
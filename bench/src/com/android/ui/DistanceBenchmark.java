@@ -0,0 +1,53 @@
+package com.android.ui;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Measures MazeBuilder.computeDists on a generated Falstad maze. 
+ * The distances are computed towards the center of the maze which is the first call in MazeBuilderFalstad.generate().
+ * @author adam
+ *
+ */
+@State(Scope.Thread)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class DistanceBenchmark {
+
+	@Param({"0", "1", "2", "3", "4", "5", "6", "7", "8", "9", "10", "11", "12", "13", "14", "15", "500x500", "1000x1000"})
+	public String size;
+
+	MazeBuilder mb;
+
+	@Setup(Level.Trial)
+	public void setup() {
+		BenchmarkMazes mazes = new BenchmarkMazes(size);
+		mb = new MazeBuilderFalstad();
+		mazes.prepare(mb, BenchmarkMazes.newMaze());
+		mb.generate();
+		// generate() finally opens the exit, close it again to get the state in which generate() calls computeDists
+		for (int x = 0; x != mb.width; x++) {
+			mb.cells.setBitToOne(x, 0, Cells.CW_TOP);
+			mb.cells.setBitToOne(x, mb.height-1, Cells.CW_BOT);
+		}
+		for (int y = 0; y != mb.height; y++) {
+			mb.cells.setBitToOne(0, y, Cells.CW_LEFT);
+			mb.cells.setBitToOne(mb.width-1, y, Cells.CW_RIGHT);
+		}
+	}
+
+	@Benchmark
+	public int[][] computeDists() {
+		mb.computeDists(mb.width/2, mb.height/2);
+		return mb.dists;
+	}
+}
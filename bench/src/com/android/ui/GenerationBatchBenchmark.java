@@ -0,0 +1,67 @@
+package com.android.ui;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures MazeBuilder.generate() for the skill levels 0 to 9, where a single build takes microseconds
+ * and preparing a builder before each invocation would cost more than the build itself.
+ * Instead a pool of BATCH prepared builders is set up before each iteration, and an iteration is a single shot
+ * of BATCH invocations that take the next builder each. With BATCH = 1000 a score in milliseconds
+ * reads as microseconds per build. GenerationBenchmark covers the larger sizes.
+ * @author adam
+ *
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 10, batchSize = GenerationBatchBenchmark.BATCH)
+@Measurement(iterations = 20, batchSize = GenerationBatchBenchmark.BATCH)
+public class GenerationBatchBenchmark {
+	static final int BATCH = 1000;
+
+	@Param({"0", "1", "2", "3", "4", "5", "6", "7", "8", "9"})
+	public String size;
+
+	@Param({"falstad", "prim", "eller", "parallel", "kruskal", "division"})
+	public String builder;
+
+	BenchmarkMazes mazes;
+	Maze maze;
+	MazeBuilder[] pool;
+	int next;
+
+	@Setup(Level.Trial)
+	public void setupTrial() {
+		mazes = new BenchmarkMazes(size);
+		maze = BenchmarkMazes.newMaze();
+		pool = new MazeBuilder[BATCH];
+	}
+
+	@Setup(Level.Iteration)
+	public void setupIteration() {
+		for (int i = 0; i != BATCH; i++) {
+			pool[i] = BenchmarkMazes.newBuilder(builder);
+			mazes.prepare(pool[i], maze);
+		}
+		next = 0;
+	}
+
+	@Benchmark
+	public Cells generate() {
+		MazeBuilder mb = pool[next++];
+		mb.generate();
+		return mb.cells;
+	}
+}
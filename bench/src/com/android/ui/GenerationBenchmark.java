@@ -0,0 +1,55 @@
+package com.android.ui;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Measures MazeBuilder.generate() of the Falstad, Prim, Eller, parallel, Kruskal and recursive division builder.
+ * Every invocation starts from freshly initialized cells with the same rooms and the same seed.
+ * The builder is prepared before each invocation, which is only accurate for builds that take milliseconds,
+ * so this benchmark covers skill levels 10 and up, GenerationBatchBenchmark the smaller ones.
+ * @author adam
+ *
+ */
+@State(Scope.Thread)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class GenerationBenchmark {
+
+	@Param({"10", "11", "12", "13", "14", "15", "500x500", "1000x1000"})
+	public String size;
+
+	@Param({"falstad", "prim", "eller", "parallel", "kruskal", "division"})
+	public String builder;
+
+	BenchmarkMazes mazes;
+	Maze maze;
+	MazeBuilder mb;
+
+	@Setup(Level.Trial)
+	public void setupTrial() {
+		mazes = new BenchmarkMazes(size);
+		maze = BenchmarkMazes.newMaze();
+	}
+
+	@Setup(Level.Invocation)
+	public void setupInvocation() {
+		mb = BenchmarkMazes.newBuilder(builder);
+		mazes.prepare(mb, maze);
+	}
+
+	@Benchmark
+	public Cells generate() {
+		mb.generate();
+		return mb.cells;
+	}
+}
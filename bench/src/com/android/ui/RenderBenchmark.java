@@ -0,0 +1,104 @@
+package com.android.ui;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Measures FirstPersonDrawer.redrawPlay for a fixed set of poses. 
+ * A pose is a position in the maze together with one of the four viewing directions.
+ * The poses are the start position plus randomly chosen cells from a seeded random number generator.
+ * A single operation draws the view for all poses.
+ * @author adam
+ *
+ */
+@State(Scope.Thread)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class RenderBenchmark {
+
+	static final int POSITIONS = 8;
+
+	@Param({"0", "1", "2", "3", "4", "5", "6", "7", "8", "9", "10", "11", "12", "13", "14", "15", "500x500", "1000x1000"})
+	public String size;
+
+	FirstPersonDrawer drawer;
+	RangeSet rset;
+	CountingGraphics graphics;
+	int[] posx, posy;
+
+	/**
+	 * Graphics that only accumulates a checksum over all drawing calls
+	 */
+	static class CountingGraphics implements MazeGraphics {
+		int sum;
+
+		@Override
+		public void setColor(int color) {
+			sum += color;
+		}
+
+		@Override
+		public void fillPolygon(int[] xps, int[] yps, int n) {
+			for (int i = 0; i != n; i++)
+				sum += xps[i] ^ yps[i];
+		}
+
+		@Override
+		public void drawLine(int x1, int y1, int x2, int y2) {
+			sum += x1 ^ y1 ^ x2 ^ y2;
+		}
+
+		@Override
+		public void fillOval(int x, int y, int width, int height) {
+			sum += x ^ y;
+		}
+	}
+
+	@Setup
+	public void setup() {
+		BenchmarkMazes mazes = new BenchmarkMazes(size);
+		MazeBuilder mb = new MazeBuilderFalstad();
+		Maze maze = BenchmarkMazes.newMaze();
+		graphics = new CountingGraphics();
+		maze.setGraphics(graphics);
+		maze.mazew = mazes.width;
+		maze.mazeh = mazes.height;
+		mazes.prepare(mb, maze);
+		mb.generate();
+		mb.genSegs();
+		maze.newMaze(mb.genNodes(), mb.cells, mb.dists, mb.startx, mb.starty);
+		drawer = maze.firstpersondrawer;
+		rset = new RangeSet();
+		// fixed set of positions: the start position and randomly picked cells
+		Random r = new Random(BenchmarkMazes.POSE_SEED);
+		posx = new int[POSITIONS];
+		posy = new int[POSITIONS];
+		posx[0] = mb.startx;
+		posy[0] = mb.starty;
+		for (int i = 1; i != POSITIONS; i++) {
+			posx[i] = r.nextInt(mazes.width);
+			posy[i] = r.nextInt(mazes.height);
+		}
+	}
+
+	@Benchmark
+	public int redrawPlay() {
+		for (int i = 0; i != POSITIONS; i++) {
+			for (int ang = 0; ang != 360; ang += 90) {
+				int view_dx = (int) (Math.cos(ang*Math.PI/180)*(1<<16));
+				int view_dy = (int) (Math.sin(ang*Math.PI/180)*(1<<16));
+				drawer.redrawPlay(posx[i], posy[i], view_dx, view_dy, 0, Maze.view_offset, rset, ang);
+			}
+		}
+		return graphics.sum;
+	}
+}
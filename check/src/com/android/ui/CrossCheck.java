@@ -0,0 +1,257 @@
+package com.android.ui;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Randomized cross-check of the distance structures against a full computation of the distances:
+ * <ul>
+ * <li>DistanceRepair: random walls are opened and closed, after each change the repaired SolutionField
+ * must have the distances and directions of a field derived from a full computeDists(),</li>
+ * <li>ParallelDistances: distances and farthest cell must be those of the sequential computeDists()
+ * for any number of threads,</li>
+ * <li>CorridorGraph: distances between random pairs of cells must be those of a plain breadth first search
+ * over the cells and paths must be shortest paths through open walls,</li>
+ * <li>DistanceOracle: the same as CorridorGraph, in addition the oracle's bounds must enclose the distance.</li>
+ * </ul>
+ * Mazes come from seeded builds, the seed can be given as the first argument and is printed with each failure.
+ * Exits with status 1 if any check fails.
+ * @author adam
+ *
+ */
+public class CrossCheck {
+	// width, height, rooms
+	private static final int[][] SIZES = { { 4, 4, 0 }, { 20, 20, 5 }, { 60, 60, 45 }, { 150, 120, 80 }, { 150, 120, 0 } };
+	private static final int WALL_CHANGES = 300; // per maze
+	private static final int QUERIES = 200; // pairs of cells per maze
+	private static final int PARALLEL_SIZE = 600; // side of the generated maze for ParallelDistances
+
+	private final long seed;
+	private final Random random;
+	private int failures;
+
+	CrossCheck(long seed) {
+		this.seed = seed;
+		this.random = new Random(seed);
+	}
+
+	public static void main(String[] args) {
+		long seed = (args.length > 0) ? Long.parseLong(args[0]) : System.nanoTime();
+		CrossCheck c = new CrossCheck(seed);
+		c.run();
+		if (c.failures > 0) {
+			System.out.println(c.failures + " failures, seed " + seed);
+			System.exit(1);
+		}
+		System.out.println("all checks passed, seed " + seed);
+	}
+
+	void run() {
+		for (int[] sz : SIZES) {
+			int w = sz[0], h = sz[1], rooms = sz[2];
+			checkRepair(w, h, rooms);
+			checkParallel(build(w, h, rooms), w, h);
+			checkCorridorGraph(w, h, rooms);
+			checkOracle(w, h, rooms);
+		}
+		MazeBuilder mb = new MazeBuilderFalstad();
+		mb.setSeed(random.nextLong());
+		mb.setup(null, PARALLEL_SIZE, PARALLEL_SIZE, 0, 0);
+		mb.cells.initialize();
+		mb.generate();
+		checkParallel(mb, PARALLEL_SIZE, PARALLEL_SIZE);
+	}
+
+	/**
+	 * Builds a maze from the random numbers of this check
+	 */
+	private MazeBuilder build(int w, int h, int rooms) {
+		MazeBuilder mb = new MazeBuilderFalstad();
+		mb.setSeed(random.nextLong());
+		mb.buildResult(w, h, rooms, 1000);
+		return mb;
+	}
+
+	private void fail(String check, int w, int h, String what) {
+		failures++;
+		if (failures <= 20)
+			System.out.println("FAIL " + check + " " + w + "x" + h + ": " + what + " (seed " + seed + ")");
+	}
+
+	/**
+	 * Opens and closes random walls inside the maze and compares the repaired solution with a full recompute
+	 */
+	private void checkRepair(int w, int h, int rooms) {
+		MazeBuilder mb = build(w, h, rooms);
+		Cells cells = mb.cells;
+		int ex = -1, ey = -1;
+		for (int x = 0; x != w; x++)
+			for (int y = 0; y != h; y++)
+				if (mb.dists[x][y] == 1) {
+					ex = x;
+					ey = y;
+				}
+		SolutionField field = new SolutionField(cells, mb.dists, w, h);
+		DistanceRepair repair = new DistanceRepair(cells, field, w, h);
+		int before = failures;
+		int changes = 0;
+		while (changes != WALL_CHANGES) {
+			int x = random.nextInt(w), y = random.nextInt(h), dir = random.nextInt(4);
+			int dx = MazeBuilder.dirsx[dir], dy = MazeBuilder.dirsy[dir];
+			if (x+dx < 0 || y+dy < 0 || x+dx >= w || y+dy >= h)
+				continue;
+			boolean open = cells.hasMaskedBitsTrue(x, y, Cells.masks[dir]);
+			if (open)
+				repair.openWall(x, y, dx, dy);
+			else
+				repair.closeWall(x, y, dx, dy);
+			changes++;
+			mb.computeDists(ex, ey);
+			SolutionField expected = new SolutionField(cells, mb.dists, w, h);
+			for (int cx = 0; cx != w; cx++)
+				for (int cy = 0; cy != h; cy++)
+					if (field.getDistance(cx, cy) != mb.dists[cx][cy] || field.getDirection(cx, cy) != expected.getDirection(cx, cy)) {
+						fail("repair", w, h, (open ? "open " : "close ") + x + "," + y + " dir " + dir + " at cell " + cx + "," + cy
+								+ " distance " + field.getDistance(cx, cy) + " expected " + mb.dists[cx][cy]
+								+ ", direction " + field.getDirection(cx, cy) + " expected " + expected.getDirection(cx, cy));
+						return;
+					}
+		}
+		report("repair", w, h, changes + " wall changes", before);
+	}
+
+	/**
+	 * Computes the distances of the builder's maze again with ParallelDistances for several numbers of threads
+	 */
+	private void checkParallel(MazeBuilder mb, int w, int h) {
+		int ax = -1, ay = -1;
+		for (int x = 0; x != w; x++)
+			for (int y = 0; y != h; y++)
+				if (mb.dists[x][y] == 1) {
+					ax = x;
+					ay = y;
+				}
+		int before = failures;
+		int[][] dists = new int[w][h];
+		for (int threads : new int[] { 1, 2, 4 }) {
+			ForkJoinPool pool = new ForkJoinPool(threads);
+			try {
+				ParallelDistances pd = new ParallelDistances(mb.cells, w, h, dists);
+				pd.setParallelFrontier(1 + random.nextInt(64)); // expand small frontiers in parallel as well
+				int far = pd.compute(ax, ay, pool);
+				if (far != mb.farthestx*h + mb.farthesty)
+					fail("parallel", w, h, threads + " threads farthest cell " + far / h + "," + far % h
+							+ " expected " + mb.farthestx + "," + mb.farthesty);
+				for (int x = 0; x != w; x++)
+					if (!Arrays.equals(dists[x], mb.dists[x])) {
+						fail("parallel", w, h, threads + " threads distances differ in column " + x);
+						break;
+					}
+			} finally {
+				pool.shutdown();
+			}
+		}
+		report("parallel", w, h, "1, 2 and 4 threads", before);
+	}
+
+	private void checkCorridorGraph(int w, int h, int rooms) {
+		MazeBuilder mb = build(w, h, rooms);
+		CorridorGraph g = CorridorGraph.build(mb.cells, w, h);
+		int before = failures;
+		for (int q = 0; q != QUERIES; q++) {
+			int s = random.nextInt(w*h), t = random.nextInt(w*h);
+			int[] expected = bfs(mb.cells, w, h, s);
+			int d = g.distance(s / h, s % h, t / h, t % h);
+			if (d != expected[t])
+				fail("corridors", w, h, "distance " + s + " to " + t + " is " + d + " expected " + expected[t]);
+			checkPath("corridors", mb.cells, w, h, g.findPath(s / h, s % h, t / h, t % h), s, t, expected[t]);
+		}
+		int node = random.nextInt(g.getNodeCount());
+		int[] nd = g.distances(node);
+		int[] expected = bfs(mb.cells, w, h, g.getNodeX(node)*h + g.getNodeY(node));
+		for (int j = 0; j != g.getNodeCount(); j++)
+			if (nd[j] != expected[g.getNodeX(j)*h + g.getNodeY(j)]) {
+				fail("corridors", w, h, "distance between nodes " + node + " and " + j + " is " + nd[j]);
+				break;
+			}
+		report("corridors", w, h, QUERIES + " queries, " + g.getNodeCount() + " nodes", before);
+	}
+
+	private void checkOracle(int w, int h, int rooms) {
+		MazeBuilder mb = build(w, h, rooms);
+		DistanceOracle o = new DistanceOracle(mb.cells, w, h, DistanceOracle.DEFAULT_LANDMARKS);
+		int before = failures;
+		for (int q = 0; q != QUERIES; q++) {
+			int s = random.nextInt(w*h), t = random.nextInt(w*h);
+			int[] expected = bfs(mb.cells, w, h, s);
+			int sx = s / h, sy = s % h, tx = t / h, ty = t % h;
+			int d = o.distance(sx, sy, tx, ty);
+			int lb = o.getLowerBound(sx, sy, tx, ty);
+			int ub = o.getUpperBound(sx, sy, tx, ty);
+			if (d != expected[t])
+				fail("oracle", w, h, "distance " + s + " to " + t + " is " + d + " expected " + expected[t]);
+			if (lb > expected[t] || ub < expected[t])
+				fail("oracle", w, h, "bounds " + lb + ".." + ub + " exclude distance " + expected[t]);
+			checkPath("oracle", mb.cells, w, h, o.findPath(sx, sy, tx, ty), s, t, expected[t]);
+		}
+		report("oracle", w, h, QUERIES + " queries", before);
+	}
+
+	/**
+	 * Checks that a path runs from s to t through open walls in d steps, or is null if t cannot be reached
+	 */
+	private void checkPath(String check, Cells cells, int w, int h, int[] path, int s, int t, int d) {
+		if (path == null) {
+			if (d < MazeBuilder.INF)
+				fail(check, w, h, "no path from " + s + " to " + t + " at distance " + d);
+			return;
+		}
+		if (path.length != d + 1 || path[0] != s || path[path.length - 1] != t) {
+			fail(check, w, h, "path from " + s + " to " + t + " has " + (path.length - 1) + " steps, expected " + d);
+			return;
+		}
+		for (int i = 1; i != path.length; i++) {
+			int x = path[i - 1] / h, y = path[i - 1] % h;
+			int dx = path[i] / h - x, dy = path[i] % h - y;
+			int dir = (dx == 1) ? 0 : (dy == 1) ? 1 : (dx == -1) ? 2 : 3;
+			if (Math.abs(dx) + Math.abs(dy) != 1 || cells.hasMaskedBitsTrue(x, y, Cells.masks[dir])) {
+				fail(check, w, h, "path from " + s + " to " + t + " runs through a wall at " + x + "," + y);
+				return;
+			}
+		}
+	}
+
+	/**
+	 * Gives the distances from cell s to all cells, index x*h + y, MazeBuilder.INF if not reachable
+	 */
+	static int[] bfs(Cells cells, int w, int h, int s) {
+		int[] dist = new int[w*h];
+		Arrays.fill(dist, MazeBuilder.INF);
+		int[] queue = new int[w*h];
+		int head = 0, tail = 0;
+		dist[s] = 0;
+		queue[tail++] = s;
+		while (head != tail) {
+			int i = queue[head++];
+			int x = i / h, y = i % h;
+			for (int dir = 0; dir != 4; dir++) {
+				if (cells.hasMaskedBitsTrue(x, y, Cells.masks[dir]))
+					continue;
+				int nx = x + MazeBuilder.dirsx[dir], ny = y + MazeBuilder.dirsy[dir];
+				if (nx < 0 || ny < 0 || nx >= w || ny >= h)
+					continue; // the opened exit
+				int j = nx*h + ny;
+				if (dist[j] == MazeBuilder.INF) {
+					dist[j] = dist[i] + 1;
+					queue[tail++] = j;
+				}
+			}
+		}
+		return dist;
+	}
+
+	private void report(String check, int w, int h, String what, int before) {
+		System.out.println(check + " " + w + "x" + h + ": " + what + ((failures == before) ? " ok" : " FAILED"));
+	}
+}
@@ -0,0 +1,213 @@
+package com.android.ui;
+
+import java.util.Arrays;
+
+/**
+ * A variant of Cells that keeps one bitset per bit of the encoding, i.e. one for each wall direction,
+ * one for each bound and one each for the CW_VIRGIN and CW_IN_ROOM flags.
+ * Each row of a bitset starts at a word boundary, bit x of word y*wordsPerRow + x/64 belongs to cell (x,y).
+ *
+ * Operations on runs of cells work on 64 cells at a time: initialize, marking an area as a room,
+ * the search for wall runs in genSegs and the update of seen cells.
+ * The memory need is 10 bits per cell instead of 16 bits for Cells.
+ *
+ * @author adam
+ *
+ */
+public class BitsetCells extends Cells {
+	private static final int BITS = 10; // number of bits in the encoding of Cells
+
+	public static final Cells.Factory FACTORY = new Cells.Factory() {
+		@Override
+		public Cells newCells(int w, int h) {
+			return new BitsetCells(w, h);
+		}
+	};
+
+	private final int width;
+	private final int height;
+	private final int wordsPerRow;
+	private final long lastWordMask; // valid bits in the last word of a row
+	private final long[][] planes; // planes[b] is the bitset for bit 1<<b of the encoding
+
+	/**
+	 * Constructor
+	 */
+	public BitsetCells(int w, int h) {
+		super(w, h, false);
+		width = w;
+		height = h;
+		wordsPerRow = (w + 63) >>> 6;
+		lastWordMask = -1L >>> (63 - ((w - 1) & 63));
+		planes = new long[BITS][wordsPerRow * h];
+	}
+
+	private static int plane(int bit) {
+		return Integer.numberOfTrailingZeros(bit);
+	}
+
+	/**
+	 * Gives the bits of word i for cells that have any of the bits in bitmask set
+	 */
+	private long word(int bitmask, int i) {
+		long v = 0;
+		for (int m = bitmask & ((1 << BITS) - 1); m != 0; m &= m - 1)
+			v |= planes[plane(m)][i];
+		return v;
+	}
+
+	/**
+	 * Gives a mask for the bits in word w of a row that lie in the range x0..x1, both inclusive
+	 */
+	private static long rangeMask(int w, int x0, int x1) {
+		long m = -1L;
+		if (w == (x0 >>> 6))
+			m &= -1L << x0;
+		if (w == (x1 >>> 6))
+			m &= -1L >>> (63 - (x1 & 63));
+		return m;
+	}
+
+	/////////////////////////// overridden storage operations ////////////////////////////
+	@Override
+	public void setBitToZero(int x, int y, int cw_bit) {
+		int i = y*wordsPerRow + (x >>> 6);
+		long bit = 1L << x;
+		for (int m = cw_bit & ((1 << BITS) - 1); m != 0; m &= m - 1)
+			planes[plane(m)][i] &= ~bit;
+	}
+
+	@Override
+	public void setBitToOne(int x, int y, int bitmask) {
+		int i = y*wordsPerRow + (x >>> 6);
+		long bit = 1L << x;
+		for (int m = bitmask & ((1 << BITS) - 1); m != 0; m &= m - 1)
+			planes[plane(m)][i] |= bit;
+	}
+
+	@Override
+	public boolean hasMaskedBitsTrue(int x, int y, int bitmask) {
+		return (word(bitmask, y*wordsPerRow + (x >>> 6)) & (1L << x)) != 0;
+	}
+
+	@Override
+	public void getRow(int y, int[] row) {
+		Arrays.fill(row, 0, width, 0);
+		int base = y*wordsPerRow;
+		for (int b = 0; b != BITS; b++) {
+			long[] p = planes[b];
+			for (int w = 0; w != wordsPerRow; w++) {
+				for (long v = p[base + w]; v != 0; v &= v - 1)
+					row[(w << 6) + Long.numberOfTrailingZeros(v)] |= 1 << b;
+			}
+		}
+	}
+
+	/**
+	 * Initialize maze such that all cells have not been visited (CW_VIRGIN), all walls are up (CW_ALL),
+	 * and borders are set as a rectangle (CW_*_BOUND).
+	 * Fills whole words at a time.
+	 */
+	@Override
+	public void initialize() {
+		clearRoomIndex();
+		for (int b = 0; b != BITS; b++) {
+			long[] p = planes[b];
+			int bit = 1 << b;
+			if ((bit & (CW_ALL | CW_VIRGIN)) != 0) {
+				for (int i = 0; i != p.length; i++)
+					p[i] = ((i % wordsPerRow) == wordsPerRow-1) ? lastWordMask : -1L;
+			}
+			else
+				Arrays.fill(p, 0L);
+		}
+		long[] top = planes[plane(CW_TOP_BOUND)];
+		long[] bot = planes[plane(CW_BOT_BOUND)];
+		int last = (height-1)*wordsPerRow;
+		for (int w = 0; w != wordsPerRow; w++) {
+			long m = (w == wordsPerRow-1) ? lastWordMask : -1L;
+			top[w] = m;
+			bot[last + w] = m;
+		}
+		long[] left = planes[plane(CW_LEFT_BOUND)];
+		long[] right = planes[plane(CW_RIGHT_BOUND)];
+		int rw = (width-1) >>> 6;
+		long rbit = 1L << (width-1);
+		for (int y = 0; y != height; y++) {
+			left[y*wordsPerRow] |= 1L;
+			right[y*wordsPerRow + rw] |= rbit;
+		}
+	}
+
+	/////////////////////////// word-wide operations on runs of cells ////////////////////////////
+	@Override
+	protected void setAreaToRoom(int rx, int ry, int rxl, int ryl) {
+		long[] inRoom = planes[plane(CW_IN_ROOM)];
+		for (int y = ry; y <= ryl; y++) {
+			int base = y*wordsPerRow;
+			for (int w = rx >>> 6; w <= (rxl >>> 6); w++) {
+				long m = rangeMask(w, rx, rxl);
+				for (int b = 0; b != 4; b++)
+					planes[b][base + w] &= ~m;
+				inRoom[base + w] |= m;
+			}
+		}
+	}
+
+	@Override
+	public int findInRow(int y, int fromx, int tox, int bitmask, boolean value) {
+		if (fromx >= tox)
+			return tox;
+		int base = y*wordsPerRow;
+		int w = fromx >>> 6;
+		long v = word(bitmask, base + w);
+		if (!value)
+			v = ~v;
+		v &= -1L << fromx;
+		int last = (tox - 1) >>> 6;
+		while (v == 0) {
+			if (++w > last)
+				return tox;
+			v = word(bitmask, base + w);
+			if (!value)
+				v = ~v;
+		}
+		return Math.min(tox, (w << 6) + Long.numberOfTrailingZeros(v));
+	}
+
+	@Override
+	public int findInColumn(int x, int fromy, int toy, int bitmask, boolean value) {
+		int i = fromy*wordsPerRow + (x >>> 6);
+		long bit = 1L << x;
+		int y = fromy;
+		if (Integer.bitCount(bitmask) == 1) {
+			long[] p = planes[plane(bitmask)];
+			while (y < toy && ((p[i] & bit) != 0) != value) {
+				y++;
+				i += wordsPerRow;
+			}
+		}
+		else {
+			while (y < toy && ((word(bitmask, i) & bit) != 0) != value) {
+				y++;
+				i += wordsPerRow;
+			}
+		}
+		return y;
+	}
+
+	@Override
+	public void setRowToOne(int y, int x0, int x1, int bitmask) {
+		int base = y*wordsPerRow;
+		for (int w = x0 >>> 6; x0 <= x1 && w <= (x1 >>> 6); w++) {
+			long m = rangeMask(w, x0, x1);
+			for (int b = bitmask & ((1 << BITS) - 1); b != 0; b &= b - 1)
+				planes[plane(b)][base + w] |= m;
+		}
+	}
+
+	@Override
+	public Cells newCells(int w, int h) {
+		return new BitsetCells(w, h);
+	}
+}
@@ -6,12 +6,16 @@ import java.util.Random;
  * This class encapsulates all access to a grid of cells. Each cell encodes whether walls or borders/bounds to rooms 
  * or to the outer border of the maze exist.
  * The class resulted from refactoring the int[][] cells area in the original Maze and Mazebuilder classes into a class of its own.
- * The internal two-dimensional array matches with a grid of cells as follows:
- * cells[0,y] form the left border, hence there is a wall on  left.
- * cells[width-1,y] form the right border, hence there is a wall on right.
- * cells[x,0] form the top border, hence there is a wall on top.
- * cells[x,height-1] form the bottom border, hence there is a wall on bottom.
- * The upper left corner is seen as position [0][0].
+ * The grid of cells is stored in a single array in row-major order, cell (x,y) is found at index x + y*width.
+ * Only 10 bits are used per cell such that a short is sufficient. Compared to a two-dimensional array 
+ * this avoids a separate object per column and a second dependent load plus bounds check per access,
+ * and iterating over a row walks memory contiguously.
+ * The grid matches with the maze as follows:
+ * cells (0,y) form the left border, hence there is a wall on  left.
+ * cells (width-1,y) form the right border, hence there is a wall on right.
+ * cells (x,0) form the top border, hence there is a wall on top.
+ * cells (x,height-1) form the bottom border, hence there is a wall on bottom.
+ * The upper left corner is seen as position (0,0).
  * 
  * Note that for a calculated maze, at least one cell on the border will have a missing wall for an exit somewhere.
  * 
@@ -21,6 +25,11 @@ import java.util.Random;
  * The internal encoding of walls for each cell into a single integer per cell is performed with bit operations (&,|) and 
  * thus error prone. An encapsulation within this class localizes all bit operations for this encoding.
  * 
+ * Subclasses may store the grid differently, e.g. CompactCells for very large mazes. They provide their own storage 
+ * and override setBitToZero, setBitToOne, hasMaskedBitsTrue and getRow, all other methods are expressed in terms of these.
+ * Subclasses with a word oriented storage like BitsetCells also override the bulk operations on runs of cells.
+ * A MazeBuilder obtains its cells from a Cells.Factory.
+ * 
  * This code is refactored code from Maze.java by Paul Falstad, www.falstad.com, Copyright (C) 1998, all rights reserved
  * Paul Falstad granted permission to modify and use code for teaching purposes.
  * Refactored by Peter Kemper
@@ -51,16 +60,63 @@ public class Cells {
 	
 	private int width;
 	private int height ;
-	protected int[][] cells;
+	protected short[] cells; // row-major, cell (x,y) is at index x + y*width, null for subclasses with their own storage
+	private final RoomIndex roomIndex; // rectangles of all cells with the InRoom flag
+
+	/**
+	 * Creates the cells for a maze of given dimensions, lets a MazeBuilder work with different implementations.
+	 */
+	public interface Factory {
+		Cells newCells(int w, int h);
+	}
+
 	/**
 	 * Constructor
 	 */
 	public Cells(int w, int h) {
+		this(w, h, true);
+	}
+
+	/**
+	 * Constructor for subclasses that provide their own storage
+	 * @param w width
+	 * @param h height
+	 * @param allocate true to allocate the internal array, false if a subclass stores cells on its own
+	 */
+	protected Cells(int w, int h, boolean allocate) {
 		width = w ;
 		height = h ;
-		cells = new int[w][h];
+		roomIndex = new RoomIndex(w, h);
+		if (allocate)
+			cells = new short[w*h];
 	}
 	
+	/**
+	 * Gives the neighbor of a cell if there is no wall in between.
+	 * Cells are identified by their index x*height + y as in the distance structures, not by the position in the internal array.
+	 * @param i index of the cell
+	 * @param dir direction as an index into masks, MazeBuilder.dirsx and MazeBuilder.dirsy
+	 * @return index of the neighbor, -1 if there is a wall or the opening leads out of the maze
+	 */
+	int neighbor(int i, int dir) {
+		int x = i / height;
+		return neighbor(x, i - x*height, dir);
+	}
+
+	/**
+	 * Gives the neighbor of cell (x,y) if there is no wall in between, for callers that have the coordinates at hand
+	 * @return index x*height + y of the neighbor, -1 if there is a wall or the opening leads out of the maze
+	 */
+	int neighbor(int x, int y, int dir) {
+		if (hasMaskedBitsTrue(x, y, masks[dir]))
+			return -1;
+		int nx = x + MazeBuilder.dirsx[dir];
+		int ny = y + MazeBuilder.dirsy[dir];
+		if (nx < 0 || nx >= width || ny < 0 || ny >= height)
+			return -1; // the opened exit
+		return nx*height + ny;
+	}
+
 	int getWidth(){
 		return width;
 	}
@@ -120,7 +176,8 @@ public class Cells {
 	 * @param cw_bit like CW_LEFT, CW_RIGHT, CW_TOP, CW_BOTTOM
 	 */
 	public void setBitToZero(int x, int y, int cw_bit) {
-		cells[x][y] &= ~cw_bit;
+		int i = x + y*width;
+		cells[i] = (short) (cells[i] & ~cw_bit);
 	}
 	/**
 	 * Sets all wall bits to zero for a given cell and direction
@@ -169,7 +226,8 @@ public class Cells {
 	
 	////////////////// set method to set additional bits to one //////////////////////
 	public void setBitToOne(int x, int y, int bitmask) {
-		cells[x][y] |= bitmask ;
+		int i = x + y*width;
+		cells[i] = (short) (cells[i] | bitmask);
 	}
 	/**
 	 * Sets the bound and wall bit to one for a given cell and direction
@@ -192,6 +250,7 @@ public class Cells {
 	 */
 	public void setInRoomToOne(int x, int y) {
 		setBitToOne(x, y, CW_IN_ROOM);
+		roomIndex.add(x, y, x, y);
 	}
 
 
@@ -207,11 +266,11 @@ public class Cells {
 	public void initialize() {
 		int x, y;
 	
+		clearRoomIndex();
+		//cells[x][y] = MazeBuilder.CW_VIRGIN | MazeBuilder.CW_ALL;
+		for (int i = 0; i != cells.length; i++)
+			cells[i] |= (CW_VIRGIN | CW_ALL);
 		for (x = 0; x != width; x++) {
-			for (y = 0; y != height; y++) {
-				//cells[x][y] = MazeBuilder.CW_VIRGIN | MazeBuilder.CW_ALL;
-				setBitToOne(x, y, (CW_VIRGIN | CW_ALL));
-			}
 			//cells[x][0] |= MazeBuilder.CW_TOP_BOUND;
 			setBitToOne(x, 0, CW_TOP_BOUND);
 			//cells[x][height-1] |= MazeBuilder.CW_BOT_BOUND;
@@ -225,26 +284,37 @@ public class Cells {
 		}
 	}
 
+	/**
+	 * Forgets about all rooms, needs to be called by initialize() of subclasses
+	 */
+	protected void clearRoomIndex() {
+		roomIndex.clear();
+	}
+
 	/**
 	 * Checks if there is a cell in the given area that belongs to a room.
 	 * The first corner is at the upper left position, the second corner is at the lower right position.
+	 * The test is performed on an index of the rooms that were marked since the last call to initialize(),
+	 * it takes constant time independent of the size of the area and the number of rooms.
 	 * @param rx 1st corner, x coordinate
 	 * @param ry 1st corner, y coordinate
 	 * @param rxl 2nd corner, x coordinate
 	 * @param ryl 2nd corner, y coordinate
 	 */
 	public boolean areaOverlapsWithRoom(int rx, int ry, int rxl, int ryl) {
-		int x, y;
-		// loop start and end are chosen such that there is at least one cell between area and any existing room
-		for (x = rx-1; x <= rxl+1; x++)
-		{
-			for (y = ry-1; y <= ryl+1; y++)
-			{
-				if (isInRoom(x, y))
-					return true ;
-			}
-		}
-		return false ;
+		// area is extended such that there is at least one cell between area and any existing room
+		return roomIndex.overlaps(rx-1, ry-1, rxl+1, ryl+1);
+	}
+	/**
+	 * Checks if there is a cell in the given area that belongs to a room, without the margin of areaOverlapsWithRoom.
+	 * Uses the same index as areaOverlapsWithRoom.
+	 * @param x0 1st corner, x coordinate
+	 * @param y0 1st corner, y coordinate
+	 * @param x1 2nd corner, x coordinate
+	 * @param y1 2nd corner, y coordinate
+	 */
+	public boolean areaContainsRoom(int x0, int y0, int x1, int y1) {
+		return roomIndex.overlaps(x0, y0, x1, y1);
 	}
 	/**
 	 * Delete a border/bound between to adjacent cells (x,y) and (x+dx,y+dy).
@@ -285,6 +355,17 @@ public class Cells {
 		// delete same wall but for adjacent cell
 		setWallToZero(x+dx, y+dy, -dx, -dy);
 	}
+	/**
+	 * Add a wall between to adjacent cells (x,y) and (x+dx,y+dy).
+	 * @param x coordinate of cell
+	 * @param y coordinate of cell
+	 * @param dx direction x, in { -1, 0, 1} obtained from dirsx[]
+	 * @param dy direction y, in { -1, 0, 1} obtained from dirsy[]
+	 */
+	public void addWall(int x, int y, int dx, int dy) {
+		setBitToOne(x, y, getBit(dx, dy));
+		setBitToOne(x+dx, y+dy, getBit(-dx, -dy));
+	}
 	/**
 	 * Generate an integer random number in interval [lo,hi] 
 	 * @param lo
@@ -314,11 +395,8 @@ public class Cells {
 		// mark all cells in area as being inside the room
 		int x;
 		int y;
-		for (x = rx; x <= rxl; x++)
-			for (y = ry; y <= ryl; y++) { 
-				setAllToZero(x, y);
-				setInRoomToOne(x, y);
-			} 
+		setAreaToRoom(rx, ry, rxl, ryl);
+		roomIndex.add(rx, ry, rxl, ryl);
 		// add a bound and a wall all around the area for this room
 		for (x = rx; x <= rxl; x++) {
 			addBoundWall(x, ry, 0, -1);
@@ -352,9 +430,109 @@ public class Cells {
 			deleteBound(x+rx, y+ry, dx, dy);
 		}
 	}
+	/**
+	 * Clears all walls and sets the InRoom flag for all cells in the given area.
+	 * Only used in markAreaAsRoom, subclasses may override it with an operation on whole rows.
+	 * @param rx 1st corner, x coordinate
+	 * @param ry 1st corner, y coordinate
+	 * @param rxl 2nd corner, x coordinate
+	 * @param ryl 2nd corner, y coordinate
+	 */
+	protected void setAreaToRoom(int rx, int ry, int rxl, int ryl) {
+		for (int x = rx; x <= rxl; x++)
+			for (int y = ry; y <= ryl; y++) { 
+				setAllToZero(x, y);
+				setBitToOne(x, y, CW_IN_ROOM);
+			} 
+	}
+	
+	/////////////////////// bulk operations on runs of cells ////////////////////////////
+	/**
+	 * Searches row y for the first cell (x,y) with fromx <= x < tox for which hasMaskedBitsTrue(x,y,bitmask) == value
+	 * @param y row
+	 * @param fromx first x coordinate to check
+	 * @param tox end of the search range, exclusive
+	 * @param bitmask bits to check
+	 * @param value true to search for a cell with any bit of the mask set, false for a cell with all bits clear
+	 * @return x coordinate of the cell, tox if there is none
+	 */
+	public int findInRow(int y, int fromx, int tox, int bitmask, boolean value) {
+		int x = fromx;
+		while (x < tox && hasMaskedBitsTrue(x, y, bitmask) != value)
+			x++;
+		return x;
+	}
+	/**
+	 * Searches column x for the first cell (x,y) with fromy <= y < toy for which hasMaskedBitsTrue(x,y,bitmask) == value
+	 * @param x column
+	 * @param fromy first y coordinate to check
+	 * @param toy end of the search range, exclusive
+	 * @param bitmask bits to check
+	 * @param value true to search for a cell with any bit of the mask set, false for a cell with all bits clear
+	 * @return y coordinate of the cell, toy if there is none
+	 */
+	public int findInColumn(int x, int fromy, int toy, int bitmask, boolean value) {
+		int y = fromy;
+		while (y < toy && hasMaskedBitsTrue(x, y, bitmask) != value)
+			y++;
+		return y;
+	}
+	/**
+	 * Sets the given bits to one for cells (x0,y) to (x1,y), both inclusive
+	 */
+	public void setRowToOne(int y, int x0, int x1, int bitmask) {
+		for (int x = x0; x <= x1; x++)
+			setBitToOne(x, y, bitmask);
+	}
+	/**
+	 * Sets the given bits to one for cells (x,y0) to (x,y1), both inclusive
+	 */
+	public void setColumnToOne(int x, int y0, int y1, int bitmask) {
+		for (int y = y0; y <= y1; y++)
+			setBitToOne(x, y, bitmask);
+	}
+	/**
+	 * Creates empty cells of the same kind, e.g. to keep track of the cells that have been seen
+	 * @param w width
+	 * @param h height
+	 * @return new cells with all bits zero
+	 */
+	public Cells newCells(int w, int h) {
+		return new Cells(w, h);
+	}
+	/**
+	 * Copies the encoding of all cells into the given cells of the same size, which may be of a different kind.
+	 * The target is initialized first, cells with the InRoom flag are registered as rooms in the target.
+	 * @param target cells to overwrite
+	 */
+	public void copyTo(Cells target) {
+		final int all = CW_ALL | CW_VIRGIN | CW_ALL_BOUNDS | CW_IN_ROOM;
+		target.initialize();
+		int[] row = new int[width];
+		for (int y = 0; y != height; y++) {
+			getRow(y, row);
+			for (int x = 0; x != width; x++) {
+				int v = row[x] & all;
+				target.setBitToZero(x, y, all & ~v);
+				target.setBitToOne(x, y, v & ~CW_IN_ROOM);
+				if ((v & CW_IN_ROOM) != 0)
+					target.setInRoomToOne(x, y);
+			}
+		}
+	}
 	//////////////////// get methods (is..., has...) for various flags ///////////////////////
 	public boolean hasMaskedBitsTrue(int x, int y, int bitmask) {
-		return (cells[x][y] & bitmask) != 0;
+		return (cells[x + y*width] & bitmask) != 0;
+	}
+	/**
+	 * Copies the encoding of all cells in row y into the given array
+	 * @param y row
+	 * @param row array of length >= width, row[x] receives the bits of cell (x,y)
+	 */
+	public void getRow(int y, int[] row) {
+		int offset = y*width;
+		for (int x = 0; x != width; x++)
+			row[x] = cells[offset + x];
 	}
 	/**
 	 * tells if InRoom flag is set for given cell
@@ -407,12 +585,13 @@ public class Cells {
 	
 
 	public boolean hasMaskedBitsFalse(int x, int y, int bitmask) {
-		return (cells[x][y] & bitmask) == 0;
+		return !hasMaskedBitsTrue(x, y, bitmask);
 	}
 	// unclear at this point why greater is checked instead of inequality to zero in code
 	// method resulted from refactoring
+	// since only the lower 10 bits are in use, the encoding is never negative and greater is the same as inequality
 	public boolean hasMaskedBitsGTZero(int x, int y, int bitmask) {
-		return (cells[x][y] & bitmask) > 0;
+		return hasMaskedBitsTrue(x, y, bitmask);
 	}
 
 	
@@ -423,10 +602,13 @@ public class Cells {
 	 */
 	public String toString() {
 		String s = "" ;
+		int[][] rows = new int[height][width] ;
+		for (int j = 0 ; j < height ; j++)
+			getRow(j, rows[j]) ;
 		for (int i = 0 ; i < width ; i++)
 		{
 			for (int j = 0 ; j < height ; j++)
-				s += " i:" + i + " j:" + j + "=" + cells[i][j] ;
+				s += " i:" + i + " j:" + j + "=" + rows[j][i] ;
 			s += "\n" ;
 		}
 		return s ;
@@ -0,0 +1,176 @@
+package com.android.ui;
+
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * A variant of Cells for very large or streaming worlds where only a region around the player or robot is ever touched.
+ * The grid is split into chunks of 64x64 cells. A chunk is allocated on the first write to one of its cells,
+ * a chunk that was never written reads as the state that initialize() produces: all walls up, virgin,
+ * and bounds on the outer border. Memory thus scales with the area that has been changed, not with width*height,
+ * and initialize() only drops the chunks instead of writing every cell.
+ *
+ * Within a chunk the encoding is the same as in Cells, a short per cell in row-major order.
+ * Chunks are organized in rows, a row of chunks is also allocated on demand.
+ *
+ * Threads may allocate chunks at the same time, e.g. the tiles of MazeBuilderParallel.
+ * Rows and chunks are published through atomic reference arrays after their contents have been initialized,
+ * so a thread that finds a chunk another thread has just allocated reads its initial state and not zeros.
+ * Writes to the cells of an existing chunk are plain writes, a thread that reads cells written by another thread
+ * must synchronize with it on its own, as MazeBuilderParallel does by joining the tasks of its tiles.
+ * initialize() must not run concurrently with any other operation.
+ *
+ * @author adam
+ *
+ */
+public class ChunkedCells extends Cells {
+	static final int CHUNK_SHIFT = 6;
+	static final int CHUNK_SIZE = 1 << CHUNK_SHIFT; // 64 cells per side
+	private static final int CHUNK_MASK = CHUNK_SIZE - 1;
+
+	public static final Cells.Factory FACTORY = new Cells.Factory() {
+		@Override
+		public Cells newCells(int w, int h) {
+			return new ChunkedCells(w, h);
+		}
+	};
+
+	private final int width;
+	private final int height;
+	private final int chunksPerRow;
+	// [chunk row][chunk column][cell within chunk], null if not allocated
+	private final AtomicReferenceArray<AtomicReferenceArray<short[]>> chunks;
+	private boolean initialized; // true if untouched cells read as initialized, false if they read as 0
+	private volatile int allocated; // number of allocated chunks, only changed while holding the lock
+
+	/**
+	 * Constructor
+	 */
+	public ChunkedCells(int w, int h) {
+		super(w, h, false);
+		width = w;
+		height = h;
+		chunksPerRow = (w + CHUNK_MASK) >>> CHUNK_SHIFT;
+		chunks = new AtomicReferenceArray<AtomicReferenceArray<short[]>>((h + CHUNK_MASK) >>> CHUNK_SHIFT);
+	}
+
+	/**
+	 * Tells how many chunks hold memory
+	 * @return number of allocated chunks
+	 */
+	public int getAllocatedChunkCount() {
+		return allocated;
+	}
+
+	/**
+	 * Gives the encoding of a cell that has never been written
+	 */
+	private int defaultValue(int x, int y) {
+		if (!initialized)
+			return 0;
+		int v = CW_VIRGIN | CW_ALL;
+		if (y == 0)
+			v |= CW_TOP_BOUND;
+		if (y == height-1)
+			v |= CW_BOT_BOUND;
+		if (x == 0)
+			v |= CW_LEFT_BOUND;
+		if (x == width-1)
+			v |= CW_RIGHT_BOUND;
+		return v;
+	}
+
+	private int getValue(int x, int y) {
+		AtomicReferenceArray<short[]> row = chunks.get(y >>> CHUNK_SHIFT);
+		if (row != null) {
+			short[] chunk = row.get(x >>> CHUNK_SHIFT);
+			if (chunk != null)
+				return chunk[((y & CHUNK_MASK) << CHUNK_SHIFT) | (x & CHUNK_MASK)];
+		}
+		return defaultValue(x, y);
+	}
+
+	/**
+	 * Gives the chunk that contains cell (x,y), allocates it if necessary
+	 */
+	private short[] getChunkForWrite(int x, int y) {
+		AtomicReferenceArray<short[]> row = chunks.get(y >>> CHUNK_SHIFT);
+		if (row != null) {
+			short[] chunk = row.get(x >>> CHUNK_SHIFT);
+			if (chunk != null)
+				return chunk;
+		}
+		return allocateChunk(x, y);
+	}
+
+	/**
+	 * Allocates the chunk that contains cell (x,y) unless it exists already.
+	 * Synchronized such that threads that write to different chunks, e.g. the tiles of MazeBuilderParallel,
+	 * can allocate chunks in the same row of chunks at the same time.
+	 * A chunk is filled before it is published, readers without the lock see it complete.
+	 */
+	private synchronized short[] allocateChunk(int x, int y) {
+		int cy = y >>> CHUNK_SHIFT;
+		AtomicReferenceArray<short[]> row = chunks.get(cy);
+		if (row == null) {
+			row = new AtomicReferenceArray<short[]>(chunksPerRow);
+			chunks.set(cy, row);
+		}
+		int cx = x >>> CHUNK_SHIFT;
+		short[] chunk = row.get(cx);
+		if (chunk == null) {
+			chunk = new short[CHUNK_SIZE*CHUNK_SIZE];
+			if (initialized) {
+				int x0 = cx << CHUNK_SHIFT;
+				int y0 = cy << CHUNK_SHIFT;
+				int xn = Math.min(CHUNK_SIZE, width - x0);
+				int yn = Math.min(CHUNK_SIZE, height - y0);
+				for (int j = 0; j != yn; j++)
+					for (int i = 0; i != xn; i++)
+						chunk[(j << CHUNK_SHIFT) | i] = (short) defaultValue(x0 + i, y0 + j);
+			}
+			row.set(cx, chunk);
+			allocated++;
+		}
+		return chunk;
+	}
+
+	/////////////////////////// overridden storage operations ////////////////////////////
+	@Override
+	public void setBitToZero(int x, int y, int cw_bit) {
+		short[] chunk = getChunkForWrite(x, y);
+		int i = ((y & CHUNK_MASK) << CHUNK_SHIFT) | (x & CHUNK_MASK);
+		chunk[i] = (short) (chunk[i] & ~cw_bit);
+	}
+
+	@Override
+	public void setBitToOne(int x, int y, int bitmask) {
+		short[] chunk = getChunkForWrite(x, y);
+		int i = ((y & CHUNK_MASK) << CHUNK_SHIFT) | (x & CHUNK_MASK);
+		chunk[i] = (short) (chunk[i] | bitmask);
+	}
+
+	@Override
+	public boolean hasMaskedBitsTrue(int x, int y, int bitmask) {
+		return (getValue(x, y) & bitmask) != 0;
+	}
+
+	@Override
+	public void getRow(int y, int[] row) {
+		for (int x = 0; x != width; x++)
+			row[x] = getValue(x, y);
+	}
+
+	/**
+	 * Initialize maze such that all cells have not been visited (CW_VIRGIN), all walls are up (CW_ALL),
+	 * and borders are set as a rectangle (CW_*_BOUND).
+	 * Drops all chunks, the initialized state is what untouched chunks read as.
+	 */
+	@Override
+	public void initialize() {
+		clearRoomIndex();
+		for (int cy = 0; cy != chunks.length(); cy++)
+			chunks.set(cy, null);
+		allocated = 0;
+		initialized = true;
+	}
+}
@@ -0,0 +1,326 @@
+package com.android.ui;
+
+import java.util.Arrays;
+
+/**
+ * A memory efficient variant of Cells for very large mazes, it uses 4 bits per cell instead of a short.
+ *
+ * Walls are stored only once. The Cells class encodes a wall twice, once for each of the two adjacent cells,
+ * and all operations that change walls (deleteWall, markAreaAsRoom) keep both copies consistent.
+ * Here each cell only keeps its wall on the right and on the bottom, the wall on the left of (x,y) is the
+ * wall on the right of (x-1,y) and the wall on top of (x,y) is the wall on the bottom of (x,y-1).
+ * Walls on the left of column 0 and on top of row 0 are kept in two separate bitsets.
+ * The remaining two bits per cell hold the CW_VIRGIN and the CW_IN_ROOM flag.
+ *
+ * Bounds are not stored per cell. The bounds of the outer border follow from the position of a cell
+ * once the grid has been initialized. Only cells whose bounds differ, i.e. the cells along the border of rooms,
+ * have an entry in a sparse overlay that maps the cell index to its bound bits.
+ *
+ * A 20000x20000 maze needs about 200 MB instead of 800 MB for Cells.
+ *
+ * @author adam
+ *
+ */
+public class CompactCells extends Cells {
+	// bits of the 4 bit encoding per cell
+	private static final int N_RIGHT = 1;
+	private static final int N_BOT = 2;
+	private static final int N_VIRGIN = 4;
+	private static final int N_IN_ROOM = 8;
+	private static final int CELLS_PER_WORD = 16;
+	// all 16 cells of a word with walls on right and bottom and being virgin
+	private static final long INITIAL_WORD = 0x7777777777777777L;
+
+	public static final Cells.Factory FACTORY = new Cells.Factory() {
+		@Override
+		public Cells newCells(int w, int h) {
+			return new CompactCells(w, h);
+		}
+	};
+
+	private final int width;
+	private final int height;
+	private final int wordsPerRow; // rows start at a word boundary
+	private final long[] nibbles;
+	private final long[] topWalls; // walls on top of row 0, bit x
+	private final long[] leftWalls; // walls on left of column 0, bit y
+	private boolean bordered; // true once initialize() has set the outer bounds
+	private final IntIntMap bounds = new IntIntMap(); // cell index -> bound bits for cells that differ from the outer border
+
+	/**
+	 * Constructor
+	 */
+	public CompactCells(int w, int h) {
+		super(w, h, false);
+		width = w;
+		height = h;
+		wordsPerRow = (w + CELLS_PER_WORD - 1) / CELLS_PER_WORD;
+		nibbles = new long[wordsPerRow * h];
+		topWalls = new long[(w + 63) >>> 6];
+		leftWalls = new long[(h + 63) >>> 6];
+	}
+
+	////////////////////////// access to the 4 bit encoding ///////////////////////////
+	private int nibble(int x, int y) {
+		return (int) (nibbles[y*wordsPerRow + (x >>> 4)] >>> ((x & 15) << 2)) & 15;
+	}
+
+	private boolean hasNibbleBit(int x, int y, int bit) {
+		return (nibbles[y*wordsPerRow + (x >>> 4)] & ((long) bit << ((x & 15) << 2))) != 0;
+	}
+
+	private void setNibbleBit(int x, int y, int bit, boolean value) {
+		int i = y*wordsPerRow + (x >>> 4);
+		long mask = (long) bit << ((x & 15) << 2);
+		if (value)
+			nibbles[i] |= mask;
+		else
+			nibbles[i] &= ~mask;
+	}
+
+	private static boolean getBit(long[] bitset, int i) {
+		return (bitset[i >>> 6] & (1L << i)) != 0;
+	}
+
+	private static void setBit(long[] bitset, int i, boolean value) {
+		if (value)
+			bitset[i >>> 6] |= 1L << i;
+		else
+			bitset[i >>> 6] &= ~(1L << i);
+	}
+
+	/**
+	 * Gives the bounds of the outer border that apply to a cell by its position
+	 */
+	private int borderBounds(int x, int y) {
+		if (!bordered)
+			return 0;
+		int b = 0;
+		if (y == 0)
+			b |= CW_TOP_BOUND;
+		if (y == height-1)
+			b |= CW_BOT_BOUND;
+		if (x == 0)
+			b |= CW_LEFT_BOUND;
+		if (x == width-1)
+			b |= CW_RIGHT_BOUND;
+		return b;
+	}
+
+	private int getBounds(int x, int y) {
+		int v = bounds.get(x + y*width);
+		return (v < 0) ? borderBounds(x, y) : v;
+	}
+
+	private void setBounds(int x, int y, int b) {
+		if (b == borderBounds(x, y))
+			bounds.remove(x + y*width);
+		else
+			bounds.put(x + y*width, b);
+	}
+
+	private boolean hasWall(int x, int y, int cw_bit) {
+		switch (cw_bit) {
+		case CW_RIGHT: return hasNibbleBit(x, y, N_RIGHT);
+		case CW_BOT:   return hasNibbleBit(x, y, N_BOT);
+		case CW_LEFT:  return (x == 0) ? getBit(leftWalls, y) : hasNibbleBit(x-1, y, N_RIGHT);
+		default:       return (y == 0) ? getBit(topWalls, x) : hasNibbleBit(x, y-1, N_BOT);
+		}
+	}
+
+	private void setWall(int x, int y, int cw_bit, boolean value) {
+		switch (cw_bit) {
+		case CW_RIGHT: setNibbleBit(x, y, N_RIGHT, value); break;
+		case CW_BOT:   setNibbleBit(x, y, N_BOT, value); break;
+		case CW_LEFT:
+			if (x == 0)
+				setBit(leftWalls, y, value);
+			else
+				setNibbleBit(x-1, y, N_RIGHT, value);
+			break;
+		default:
+			if (y == 0)
+				setBit(topWalls, x, value);
+			else
+				setNibbleBit(x, y-1, N_BOT, value);
+			break;
+		}
+	}
+
+	/**
+	 * Sets or clears all bits of the given mask for a cell
+	 */
+	private void setBits(int x, int y, int bitmask, boolean value) {
+		for (int n = 0; n != 4; n++) {
+			if ((bitmask & masks[n]) != 0)
+				setWall(x, y, masks[n], value);
+		}
+		if ((bitmask & CW_VIRGIN) != 0)
+			setNibbleBit(x, y, N_VIRGIN, value);
+		if ((bitmask & CW_IN_ROOM) != 0)
+			setNibbleBit(x, y, N_IN_ROOM, value);
+		if ((bitmask & CW_ALL_BOUNDS) != 0) {
+			int b = getBounds(x, y);
+			setBounds(x, y, value ? (b | (bitmask & CW_ALL_BOUNDS)) : (b & ~bitmask));
+		}
+	}
+
+	/**
+	 * Gives the full encoding of a cell as it is used by Cells
+	 */
+	private int getValue(int x, int y) {
+		int n = nibble(x, y);
+		int v = 0;
+		if ((n & N_RIGHT) != 0)
+			v |= CW_RIGHT;
+		if ((n & N_BOT) != 0)
+			v |= CW_BOT;
+		if ((n & N_VIRGIN) != 0)
+			v |= CW_VIRGIN;
+		if ((n & N_IN_ROOM) != 0)
+			v |= CW_IN_ROOM;
+		if (hasWall(x, y, CW_LEFT))
+			v |= CW_LEFT;
+		if (hasWall(x, y, CW_TOP))
+			v |= CW_TOP;
+		return v | getBounds(x, y);
+	}
+
+	/////////////////////////// overridden storage operations ////////////////////////////
+	@Override
+	public void setBitToZero(int x, int y, int cw_bit) {
+		setBits(x, y, cw_bit, false);
+	}
+
+	@Override
+	public void setBitToOne(int x, int y, int bitmask) {
+		setBits(x, y, bitmask, true);
+	}
+
+	@Override
+	public boolean hasMaskedBitsTrue(int x, int y, int bitmask) {
+		// shortcut for the frequent queries on a single wall or flag
+		switch (bitmask) {
+		case CW_RIGHT:
+		case CW_BOT:
+		case CW_LEFT:
+		case CW_TOP:
+			return hasWall(x, y, bitmask);
+		case CW_VIRGIN:
+			return hasNibbleBit(x, y, N_VIRGIN);
+		case CW_IN_ROOM:
+			return hasNibbleBit(x, y, N_IN_ROOM);
+		case CW_TOP_BOUND:
+		case CW_BOT_BOUND:
+		case CW_LEFT_BOUND:
+		case CW_RIGHT_BOUND:
+			return (getBounds(x, y) & bitmask) != 0;
+		default:
+			return (getValue(x, y) & bitmask) != 0;
+		}
+	}
+
+	@Override
+	public void getRow(int y, int[] row) {
+		for (int x = 0; x != width; x++)
+			row[x] = getValue(x, y);
+	}
+
+	/**
+	 * Initialize maze such that all cells have not been visited (CW_VIRGIN), all walls are up (CW_ALL),
+	 * and borders are set as a rectangle (CW_*_BOUND).
+	 * Fills whole words at a time, the outer bounds need no storage.
+	 */
+	@Override
+	public void initialize() {
+		clearRoomIndex();
+		Arrays.fill(nibbles, INITIAL_WORD);
+		Arrays.fill(topWalls, -1L);
+		Arrays.fill(leftWalls, -1L);
+		bounds.clear();
+		bordered = true;
+	}
+
+	/**
+	 * A minimal hash map from int to int with open addressing and linear probing.
+	 * Keys and values are non-negative, get() returns -1 for a missing key.
+	 * It avoids boxing Integer keys and values which would cost more than the cells it describes.
+	 */
+	private static class IntIntMap {
+		private static final int FREE = -1;
+		private int[] keys = newKeys(16);
+		private int[] values = new int[16];
+		private int size;
+
+		private static int[] newKeys(int n) {
+			int[] k = new int[n];
+			Arrays.fill(k, FREE);
+			return k;
+		}
+
+		private int slot(int key) {
+			return (key * 0x9E3779B9) >>> (32 - Integer.numberOfTrailingZeros(keys.length)) ;
+		}
+
+		int get(int key) {
+			int mask = keys.length - 1;
+			for (int i = slot(key); keys[i] != FREE; i = (i+1) & mask) {
+				if (keys[i] == key)
+					return values[i];
+			}
+			return -1;
+		}
+
+		void put(int key, int value) {
+			int mask = keys.length - 1;
+			int i = slot(key);
+			for (; keys[i] != FREE; i = (i+1) & mask) {
+				if (keys[i] == key) {
+					values[i] = value;
+					return;
+				}
+			}
+			keys[i] = key;
+			values[i] = value;
+			if (++size * 2 > keys.length)
+				rehash(keys.length * 2);
+		}
+
+		void remove(int key) {
+			int mask = keys.length - 1;
+			int i = slot(key);
+			while (keys[i] != key) {
+				if (keys[i] == FREE)
+					return;
+				i = (i+1) & mask;
+			}
+			// remove and reinsert the rest of the cluster to keep probing sequences intact
+			keys[i] = FREE;
+			size--;
+			for (i = (i+1) & mask; keys[i] != FREE; i = (i+1) & mask) {
+				int k = keys[i];
+				keys[i] = FREE;
+				size--;
+				put(k, values[i]);
+			}
+		}
+
+		void clear() {
+			keys = newKeys(16);
+			values = new int[16];
+			size = 0;
+		}
+
+		private void rehash(int n) {
+			int[] oldKeys = keys;
+			int[] oldValues = values;
+			keys = newKeys(n);
+			values = new int[n];
+			size = 0;
+			for (int i = 0; i != oldKeys.length; i++) {
+				if (oldKeys[i] != FREE)
+					put(oldKeys[i], oldValues[i]);
+			}
+		}
+	}
+}
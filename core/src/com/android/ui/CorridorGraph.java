@@ -0,0 +1,458 @@
+package com.android.ui;
+
+import java.util.Arrays;
+
+/**
+ * The maze as a weighted graph of its junctions. Most cells of a generated maze are corridor cells with exactly two openings,
+ * a path through them has no choices, so a search only needs to decide at the other cells.
+ * The nodes of the graph are the junctions, the dead ends, the cells of rooms and the exit cell, i.e. all cells
+ * without exactly two openings to neighbors inside the maze and the cell with the opening to the outside.
+ * An edge is a corridor between two nodes, its weight is the number of steps from one node to the other.
+ *
+ * The graph is kept in compressed sparse row arrays: the edges of node k are offsets[k] to offsets[k+1]-1
+ * with their target nodes, weights and the direction they leave node k in. Every corridor is kept as an edge in both directions.
+ * Corridor cells are not stored, a path through them is found again by walking the grid when it is expanded to cells.
+ *
+ * Searches cost in the number of junctions instead of the number of cells. A search from or to a corridor cell
+ * walks to the two ends of its corridor first. The graph reflects the walls at the time it is built.
+ * Cells are identified by their index x*height + y, i.e. in the order of dists[x][y].
+ * @author adam
+ *
+ */
+public class CorridorGraph {
+	private final Cells cells;
+	private final int width, height;
+	private final int[] nodeCell; // cell index of each node, ascending
+	private final int[] offsets; // edges of node k are offsets[k] to offsets[k+1]-1
+	private final int[] target; // node at the other end of an edge
+	private final int[] weight; // steps from one end of an edge to the other
+	private final byte[] edgeDir; // direction the edge leaves its node in, index into MazeBuilder.dirsx and dirsy
+	// state of a search between two cells per node, reused: an entry is valid if its stamp is the one of the current search
+	private int[] searchStamp, searchDist, predEdge, predNode, startOf;
+	private int stamp;
+
+	private CorridorGraph(Cells cells, int width, int height, int[] nodeCell, int[] offsets, int[] target, int[] weight, byte[] edgeDir) {
+		this.cells = cells;
+		this.width = width;
+		this.height = height;
+		this.nodeCell = nodeCell;
+		this.offsets = offsets;
+		this.target = target;
+		this.weight = weight;
+		this.edgeDir = edgeDir;
+	}
+
+	/**
+	 * Collapses the corridors of a maze into a graph of its junctions
+	 * @param cells walls of the maze, the graph keeps a reference to expand paths
+	 * @param width width
+	 * @param height height
+	 * @return the graph
+	 */
+	public static CorridorGraph build(Cells cells, int width, int height) {
+		// first pass: find the nodes in index order and count their edges
+		int nodes = 0, edges = 0;
+		int[] nodeCell = new int[64];
+		for (int x = 0; x != width; x++)
+			for (int y = 0; y != height; y++) {
+				int deg = degree(cells, x*height + y);
+				if (deg == 2 && !hasOpeningToOutside(cells, width, height, x, y))
+					continue;
+				if (nodes == nodeCell.length)
+					nodeCell = Arrays.copyOf(nodeCell, 2*nodes);
+				nodeCell[nodes++] = x*height + y;
+				edges += deg;
+			}
+		nodeCell = Arrays.copyOf(nodeCell, nodes);
+		int[] offsets = new int[nodes+1];
+		int[] target = new int[edges];
+		int[] weight = new int[edges];
+		byte[] edgeDir = new byte[edges];
+		CorridorGraph g = new CorridorGraph(cells, width, height, nodeCell, offsets, target, weight, edgeDir);
+		// second pass: walk each corridor from each of its ends
+		int e = 0;
+		for (int k = 0; k != nodes; k++) {
+			offsets[k] = e;
+			int c = nodeCell[k];
+			for (int dir = 0; dir != 4; dir++) {
+				if (cells.neighbor(c, dir) < 0)
+					continue;
+				long w = g.walk(c, dir, -1);
+				target[e] = g.nodeOf((int) w);
+				weight[e] = (int) (w >>> 32);
+				edgeDir[e] = (byte) dir;
+				e++;
+			}
+		}
+		offsets[nodes] = e;
+		return g;
+	}
+
+	/**
+	 * Gives the number of openings of a cell to neighbors inside the maze
+	 */
+	private static int degree(Cells cells, int i) {
+		int deg = 0;
+		for (int dir = 0; dir != 4; dir++) {
+			if (cells.neighbor(i, dir) >= 0)
+				deg++;
+		}
+		return deg;
+	}
+
+	private static boolean hasOpeningToOutside(Cells cells, int width, int height, int x, int y) {
+		for (int dir = 0; dir != 4; dir++) {
+			int nx = x + MazeBuilder.dirsx[dir];
+			int ny = y + MazeBuilder.dirsy[dir];
+			if ((nx < 0 || nx >= width || ny < 0 || ny >= height) && !cells.hasMaskedBitsTrue(x, y, Cells.masks[dir]))
+				return true;
+		}
+		return false;
+	}
+
+	/**
+	 * Walks a corridor from cell c in direction dir until a node or the cell stop is reached
+	 * @return steps << 32 | index of the cell reached, -1 if the corridor is a cycle without any node
+	 */
+	private long walk(int c, int dir, int stop) {
+		int start = c;
+		long steps = 0;
+		while (true) {
+			c = cells.neighbor(c, dir);
+			steps++;
+			if (c == stop || nodeOf(c) >= 0)
+				return (steps << 32) | c;
+			if (c == start)
+				return -1;
+			// a corridor cell has one opening besides the one it is entered through
+			int back = (dir + 2) & 3;
+			for (dir = 0; dir != 4; dir++)
+				if (dir != back && cells.neighbor(c, dir) >= 0)
+					break;
+		}
+	}
+
+	/**
+	 * Gives the node of a cell
+	 * @param i cell index x*height + y
+	 * @return node, -1 if the cell is in a corridor
+	 */
+	public int nodeOf(int i) {
+		int k = Arrays.binarySearch(nodeCell, i);
+		return k >= 0 ? k : -1;
+	}
+
+	/**
+	 * Gives the node of a cell
+	 * @return node, -1 if the cell is in a corridor
+	 */
+	public int nodeOf(int x, int y) {
+		return nodeOf(x*height + y);
+	}
+
+	public int getNodeX(int node) {
+		return nodeCell[node] / height;
+	}
+
+	public int getNodeY(int node) {
+		return nodeCell[node] % height;
+	}
+
+	public int getNodeCount() {
+		return nodeCell.length;
+	}
+
+	/**
+	 * Gives the number of edges, every corridor counts twice, once for each direction
+	 */
+	public int getEdgeCount() {
+		return target.length;
+	}
+
+	/**
+	 * Computes the number of corridors on the path with the fewest junctions from a node to every node
+	 * with a breadth first search
+	 * @param source node to start from
+	 * @return number of edges per node, 99999999 if a node cannot be reached
+	 */
+	public int[] hops(int source) {
+		int n = nodeCell.length;
+		int[] hops = new int[n];
+		Arrays.fill(hops, MazeBuilder.INF);
+		int[] queue = new int[n];
+		int head = 0, tail = 0;
+		hops[source] = 0;
+		queue[tail++] = source;
+		while (head != tail) {
+			int k = queue[head++];
+			for (int e = offsets[k]; e != offsets[k+1]; e++)
+				if (hops[target[e]] == MazeBuilder.INF) {
+					hops[target[e]] = hops[k] + 1;
+					queue[tail++] = target[e];
+				}
+		}
+		return hops;
+	}
+
+	/**
+	 * Computes the number of steps from a node to every node with Dijkstra's algorithm
+	 * @param source node to start from
+	 * @return steps per node, 99999999 if a node cannot be reached
+	 */
+	public int[] distances(int source) {
+		int[] dist = new int[nodeCell.length];
+		Arrays.fill(dist, MazeBuilder.INF);
+		dist[source] = 0;
+		Heap heap = new Heap();
+		heap.push(0, source);
+		while (!heap.isEmpty()) {
+			long top = heap.pop();
+			int k = (int) top;
+			if ((int) (top >>> 32) != dist[k])
+				continue; // outdated entry
+			for (int e = offsets[k]; e != offsets[k+1]; e++) {
+				int d = dist[k] + weight[e];
+				if (d < dist[target[e]]) {
+					dist[target[e]] = d;
+					heap.push(d, target[e]);
+				}
+			}
+		}
+		return dist;
+	}
+
+	/**
+	 * Computes the number of steps on a shortest path between two cells
+	 * @return steps, 99999999 if there is no path
+	 */
+	public synchronized int distance(int sx, int sy, int tx, int ty) {
+		Search s = new Search(sx*height + sy, tx*height + ty);
+		return s.best;
+	}
+
+	/**
+	 * Finds a shortest path between two cells with an A* search on the graph and expands it to cells
+	 * @return cell indices x*height + y from (sx,sy) to (tx,ty), null if there is no path
+	 */
+	public synchronized int[] findPath(int sx, int sy, int tx, int ty) {
+		Search s = new Search(sx*height + sy, tx*height + ty);
+		return s.best >= MazeBuilder.INF ? null : s.expand();
+	}
+
+	/**
+	 * The end of a corridor seen from a cell in it: the node, the steps to it and the direction the cell is left in.
+	 * A node is its own single end with 0 steps.
+	 */
+	private int[] ends(int c, int stop, int[] direct) {
+		if (nodeOf(c) >= 0)
+			return new int[] { nodeOf(c), 0, -1 };
+		int[] ends = new int[6];
+		int ct = 0;
+		for (int dir = 0; dir != 4; dir++) {
+			if (cells.neighbor(c, dir) < 0)
+				continue;
+			long w = walk(c, dir, stop);
+			if (w < 0)
+				continue;
+			int end = (int) w;
+			int steps = (int) (w >>> 32);
+			if (end == stop) {
+				// source and target are in the same corridor
+				if (steps < direct[0]) {
+					direct[0] = steps;
+					direct[1] = dir;
+				}
+				// walk on to the node behind the target
+				w = walk(c, dir, -1);
+				end = (int) w;
+				steps = (int) (w >>> 32);
+			}
+			ends[ct++] = nodeOf(end);
+			ends[ct++] = steps;
+			ends[ct++] = dir;
+		}
+		return Arrays.copyOf(ends, ct);
+	}
+
+	/**
+	 * An A* search between two cells, the heuristic is the manhattan distance to the target,
+	 * which a path through the grid cannot beat. The search keeps its state per node in the arrays of the graph,
+	 * which are not cleared between searches but invalidated with a new stamp, so a search touches the nodes it reaches only.
+	 */
+	private class Search {
+		final int source, goal;
+		final int[] startEnds, goalEnds;
+		final int[] direct = { MazeBuilder.INF, -1 }; // steps and direction if source and goal share a corridor
+		int best = MazeBuilder.INF;
+		int bestEnd = -1; // index into goalEnds of the end the best path arrives from, -1 for the direct path
+
+		Search(int source, int goal) {
+			this.source = source;
+			this.goal = goal;
+			if (source == goal) {
+				best = 0;
+				startEnds = goalEnds = new int[0];
+				return;
+			}
+			startEnds = ends(source, goal, direct);
+			goalEnds = ends(goal, -1, new int[2]);
+			best = direct[0];
+			int n = nodeCell.length;
+			if (searchStamp == null || stamp == Integer.MAX_VALUE) {
+				searchStamp = new int[n];
+				searchDist = new int[n];
+				predEdge = new int[n];
+				predNode = new int[n];
+				startOf = new int[n];
+				stamp = 0;
+			}
+			stamp++;
+			Heap heap = new Heap();
+			for (int s = 0; s < startEnds.length; s += 3) {
+				int k = startEnds[s];
+				if (startEnds[s+1] < dist(k)) {
+					reach(k, startEnds[s+1], -1, -1, s);
+					heap.push(dist(k) + estimate(k), k);
+				}
+			}
+			while (!heap.isEmpty()) {
+				long top = heap.pop();
+				int k = (int) top;
+				int f = (int) (top >>> 32);
+				if (f >= best)
+					break;
+				int dk = dist(k);
+				if (f != dk + estimate(k))
+					continue; // outdated entry
+				for (int g = 0; g < goalEnds.length; g += 3)
+					if (goalEnds[g] == k && dk + goalEnds[g+1] < best) {
+						best = dk + goalEnds[g+1];
+						bestEnd = g;
+					}
+				for (int e = offsets[k]; e != offsets[k+1]; e++) {
+					int t = target[e];
+					int d = dk + weight[e];
+					if (d < dist(t)) {
+						reach(t, d, e, k, startOf[k]);
+						heap.push(d + estimate(t), t);
+					}
+				}
+			}
+		}
+
+		private int dist(int k) {
+			return searchStamp[k] == stamp ? searchDist[k] : MazeBuilder.INF;
+		}
+
+		private void reach(int k, int d, int e, int from, int start) {
+			searchStamp[k] = stamp;
+			searchDist[k] = d;
+			predEdge[k] = e;
+			predNode[k] = from;
+			startOf[k] = start;
+		}
+
+		private int estimate(int k) {
+			int c = nodeCell[k];
+			return Math.abs(c / height - goal / height) + Math.abs(c % height - goal % height);
+		}
+
+		/**
+		 * Expands the best path to the cells it runs through
+		 */
+		int[] expand() {
+			int[] path = new int[best + 1];
+			path[0] = source;
+			if (best == 0)
+				return path;
+			if (bestEnd < 0) {
+				walkInto(path, 0, source, direct[1], best);
+				return path;
+			}
+			// the nodes of the path backwards from the end at the goal
+			int end = goalEnds[bestEnd];
+			int[] edges = new int[8];
+			int ct = 0;
+			int first = end;
+			for (; predEdge[first] >= 0; first = predNode[first]) {
+				if (ct == edges.length)
+					edges = Arrays.copyOf(edges, 2*ct);
+				edges[ct++] = predEdge[first];
+			}
+			int pos = 0;
+			int s = startOf[first];
+			if (startEnds[s+1] > 0)
+				pos = walkInto(path, pos, source, startEnds[s+2], startEnds[s+1]);
+			// each edge continues from the cell the path has arrived at
+			for (int i = ct-1; i >= 0; i--)
+				pos = walkInto(path, pos, path[pos], edgeDir[edges[i]], weight[edges[i]]);
+			// from the end to the goal is the walk from the goal to the end backwards
+			int steps = goalEnds[bestEnd+1];
+			if (steps > 0) {
+				int[] back = new int[steps + 1];
+				back[0] = goal;
+				walkInto(back, 0, goal, goalEnds[bestEnd+2], steps);
+				for (int i = steps-1; i >= 0; i--)
+					path[++pos] = back[i];
+			}
+			return path;
+		}
+
+		/**
+		 * Follows a corridor from cell c in direction dir for the given number of steps,
+		 * stores the cells after path[pos] and returns the position of the last one
+		 */
+		private int walkInto(int[] path, int pos, int c, int dir, int steps) {
+			for (int i = 0; i != steps; i++) {
+				c = cells.neighbor(c, dir);
+				path[++pos] = c;
+				int back = (dir + 2) & 3;
+				for (dir = 0; dir != 4; dir++)
+					if (dir != back && cells.neighbor(c, dir) >= 0)
+						break;
+			}
+			return pos;
+		}
+	}
+
+	/**
+	 * A binary min heap of priority << 32 | node
+	 */
+	static class Heap {
+		private long[] a = new long[64];
+		private int size;
+
+		boolean isEmpty() {
+			return size == 0;
+		}
+
+		void push(int priority, int node) {
+			if (size == a.length)
+				a = Arrays.copyOf(a, 2*size);
+			long v = ((long) priority << 32) | node;
+			int i = size++;
+			while (i > 0 && a[(i-1) >>> 1] > v) {
+				a[i] = a[(i-1) >>> 1];
+				i = (i-1) >>> 1;
+			}
+			a[i] = v;
+		}
+
+		long pop() {
+			long top = a[0];
+			long v = a[--size];
+			int i = 0;
+			while (2*i + 1 < size) {
+				int c = 2*i + 1;
+				if (c + 1 < size && a[c+1] < a[c])
+					c++;
+				if (a[c] >= v)
+					break;
+				a[i] = a[c];
+				i = c;
+			}
+			a[i] = v;
+			return top;
+		}
+	}
+}
@@ -0,0 +1,219 @@
+package com.android.ui;
+
+import java.util.Arrays;
+
+/**
+ * Answers distance queries between any two cells of a maze with the help of a few landmark cells (ALT).
+ * For each landmark the distances to all cells are computed once with a breadth first search.
+ * By the triangle inequality the distance between s and t is at least |d(L,s) - d(L,t)| and at most d(L,s) + d(L,t)
+ * for each landmark L, which gives bounds in constant time per landmark:
+ * <ul>
+ * <li>getLowerBound() and getUpperBound() answer approximately, the upper bound is the length of a real path via a landmark,</li>
+ * <li>distance() and findPath() answer exactly with an A* search on the cells that uses the lower bound as its heuristic
+ * and ends right away if the bounds meet.</li>
+ * </ul>
+ * Landmarks are picked far apart from each other: each is the cell furthest from the ones picked before.
+ * Memory is an int per cell and landmark. The distances reflect the walls at the time the oracle is built.
+ * Cells are identified by their index x*height + y, i.e. in the order of dists[x][y].
+ * @author adam
+ *
+ */
+public class DistanceOracle {
+	static final int DEFAULT_LANDMARKS = 8;
+
+	private final Cells cells;
+	private final int width, height, n;
+	private final int[] landmarks; // cell index of each landmark
+	private final int[][] fields; // distances from each landmark to every cell
+	// state of a search per cell, reused: an entry is valid if its stamp is the one of the current search
+	private int[] searchStamp, searchDist, searchBound, pred; // searchBound: lower bound to the target
+	private int stamp;
+
+	/**
+	 * Constructor, picks the landmarks and computes their distances
+	 * @param cells walls of the maze
+	 * @param width width
+	 * @param height height
+	 * @param count number of landmarks, 8 is a good choice for the mazes of the game
+	 */
+	public DistanceOracle(Cells cells, int width, int height, int count) {
+		this.cells = cells;
+		this.width = width;
+		this.height = height;
+		this.n = width*height;
+		count = Math.max(1, Math.min(count, n));
+		landmarks = new int[count];
+		fields = new int[count][];
+		int[] queue = new int[n];
+		// the first landmark is the cell furthest from a corner, the next ones maximize the distance to all before
+		int[] nearest = new int[n];
+		bfs(0, nearest, queue);
+		for (int l = 0; l != count; l++) {
+			int best = 0;
+			for (int i = 1; i != n; i++)
+				if (nearest[i] < MazeBuilder.INF && (nearest[best] >= MazeBuilder.INF || nearest[i] > nearest[best]))
+					best = i;
+			landmarks[l] = best;
+			fields[l] = new int[n];
+			bfs(best, fields[l], queue);
+			if (l == 0)
+				System.arraycopy(fields[0], 0, nearest, 0, n);
+			else
+				for (int i = 0; i != n; i++)
+					nearest[i] = Math.min(nearest[i], fields[l][i]);
+		}
+	}
+
+	/**
+	 * Computes the distances from cell s to all cells
+	 */
+	private void bfs(int s, int[] dist, int[] queue) {
+		Arrays.fill(dist, MazeBuilder.INF);
+		int head = 0, tail = 0;
+		dist[s] = 0;
+		queue[tail++] = s;
+		while (head != tail) {
+			int c = queue[head++];
+			for (int dir = 0; dir != 4; dir++) {
+				int j = cells.neighbor(c, dir);
+				if (j >= 0 && dist[j] == MazeBuilder.INF) {
+					dist[j] = dist[c] + 1;
+					queue[tail++] = j;
+				}
+			}
+		}
+	}
+
+	/**
+	 * Gives a lower bound of the distance between two cells, the maximum over the landmarks and the manhattan distance
+	 * @return lower bound, 99999999 if the cells are known to be disconnected
+	 */
+	public int getLowerBound(int sx, int sy, int tx, int ty) {
+		return lowerBound(sx*height + sy, tx*height + ty);
+	}
+
+	/**
+	 * Gives an upper bound of the distance between two cells, the length of the shortest path via a landmark
+	 * @return upper bound, 99999999 if no landmark connects the cells
+	 */
+	public int getUpperBound(int sx, int sy, int tx, int ty) {
+		return upperBound(sx*height + sy, tx*height + ty);
+	}
+
+	private int lowerBound(int s, int t) {
+		int lb = Math.abs(s / height - t / height) + Math.abs(s % height - t % height);
+		for (int l = 0; l != fields.length; l++) {
+			int ds = fields[l][s];
+			int dt = fields[l][t];
+			if (ds >= MazeBuilder.INF || dt >= MazeBuilder.INF) {
+				if (ds != dt)
+					return MazeBuilder.INF; // one cell is connected to the landmark, the other one is not
+				continue;
+			}
+			lb = Math.max(lb, Math.abs(ds - dt));
+		}
+		return lb;
+	}
+
+	private int upperBound(int s, int t) {
+		int ub = MazeBuilder.INF;
+		for (int l = 0; l != fields.length; l++)
+			if (fields[l][s] < MazeBuilder.INF && fields[l][t] < MazeBuilder.INF)
+				ub = Math.min(ub, fields[l][s] + fields[l][t]);
+		return ub;
+	}
+
+	/**
+	 * Computes the number of steps on a shortest path between two cells
+	 * @return steps, 99999999 if there is no path
+	 */
+	public synchronized int distance(int sx, int sy, int tx, int ty) {
+		int s = sx*height + sy;
+		int t = tx*height + ty;
+		int lb = lowerBound(s, t);
+		if (lb >= MazeBuilder.INF || lb == upperBound(s, t))
+			return lb;
+		return search(s, t);
+	}
+
+	/**
+	 * Finds a shortest path between two cells with an A* search guided by the landmarks
+	 * @return cell indices x*height + y from (sx,sy) to (tx,ty), null if there is no path
+	 */
+	public synchronized int[] findPath(int sx, int sy, int tx, int ty) {
+		int s = sx*height + sy;
+		int t = tx*height + ty;
+		if (lowerBound(s, t) >= MazeBuilder.INF)
+			return null;
+		int d = search(s, t);
+		if (d >= MazeBuilder.INF)
+			return null;
+		int[] path = new int[d + 1];
+		for (int i = d, c = t; i >= 0; i--, c = pred[c])
+			path[i] = c;
+		return path;
+	}
+
+	/**
+	 * A* search from cell s to cell t, records the predecessor of each cell it reaches
+	 * @return steps, 99999999 if there is no path
+	 */
+	private int search(int s, int t) {
+		if (searchStamp == null || stamp == Integer.MAX_VALUE) {
+			searchStamp = new int[n];
+			searchDist = new int[n];
+			searchBound = new int[n];
+			pred = new int[n];
+			stamp = 0;
+		}
+		stamp++;
+		CorridorGraph.Heap heap = new CorridorGraph.Heap();
+		reach(s, 0, -1, t);
+		heap.push(searchBound[s], s);
+		while (!heap.isEmpty()) {
+			long top = heap.pop();
+			int c = (int) top;
+			int dc = dist(c);
+			// the lower bound is consistent, so a cell is final when it is taken from the heap the first time
+			if ((int) (top >>> 32) != dc + searchBound[c])
+				continue; // outdated entry
+			if (c == t)
+				return dc;
+			for (int dir = 0; dir != 4; dir++) {
+				int j = cells.neighbor(c, dir);
+				if (j >= 0 && dc + 1 < dist(j)) {
+					reach(j, dc + 1, c, t);
+					heap.push(dc + 1 + searchBound[j], j);
+				}
+			}
+		}
+		return MazeBuilder.INF;
+	}
+
+	private int dist(int c) {
+		return searchStamp[c] == stamp ? searchDist[c] : MazeBuilder.INF;
+	}
+
+	/**
+	 * Records a new distance of cell c in the current search, the lower bound to the target is computed once per search
+	 */
+	private void reach(int c, int d, int from, int t) {
+		if (searchStamp[c] != stamp)
+			searchBound[c] = lowerBound(c, t);
+		searchStamp[c] = stamp;
+		searchDist[c] = d;
+		pred[c] = from;
+	}
+
+	public int getLandmarkCount() {
+		return landmarks.length;
+	}
+
+	public int getLandmarkX(int l) {
+		return landmarks[l] / height;
+	}
+
+	public int getLandmarkY(int l) {
+		return landmarks[l] % height;
+	}
+}
@@ -0,0 +1,374 @@
+package com.android.ui;
+
+import java.util.Arrays;
+
+/**
+ * Keeps the solution of a maze up to date while walls are opened and closed during play,
+ * without running MazeBuilder.computeDists() over the whole maze again.
+ *
+ * Opening a wall can only shorten distances: if one side is more than one step further away than the other,
+ * it gets the distance of the other side plus one and a breadth first search from there lowers the distances
+ * of the cells behind it until no cell gets any closer.
+ *
+ * Closing a wall can only lengthen distances, and only of cells whose shortest paths all run through the closed wall.
+ * These cells are found level by level starting at the far side of the wall: a cell is affected if none of its neighbors
+ * one step closer to the exit is unaffected. The affected cells then get the best distance over their unaffected neighbors
+ * and a breadth first search that starts from these cells in order of their distance settles the rest of them.
+ * Cells that are cut off from the exit get distance 99999999 like in computeDists().
+ *
+ * The distances live in the SolutionField only. A repair reads them from the field and keeps the distances it has read
+ * or changed in a hash table of its own, then derives the field again for the changed cells and their neighbors.
+ * A repair that reaches more than an eighth of the cells switches to an int per cell for the rest of the repair.
+ * The field is not written before the repair is complete, as a distance beyond 16777214 is computed on demand by
+ * following directions that a partial repair would leave outdated.
+ * Both repairs touch the cells whose distances change and their neighbors, not the whole maze.
+ * The exit stays where it is, so walls on the border of the maze cannot be changed with this class.
+ * Cells are identified by their index x*height + y.
+ * @author adam
+ *
+ */
+public class DistanceRepair {
+	private final Cells cells;
+	private final SolutionField solution;
+	private final int width, height;
+	private final long[] marked; // bit per cell index, set for affected cells while a wall is closed
+	private int[] queue = new int[64];
+	private int[] affected = new int[64];
+	private long[] seeds = new long[64]; // distance << 32 | cell index
+	private int changed; // number of cells whose distance changed in the last repair
+	// distances read or set in the current repair, open addressing: (cell index + 1) << 32 | distance, 0 if empty
+	private long[] known = new long[64];
+	private int knownCount;
+	// replaces the table once it holds more than an eighth of the cells: distance + 1 per cell, 0 if not known
+	private int[] dense;
+	private int[] touched = new int[64]; // cells that got a new distance in the current repair
+	private int touchedCount;
+	// current distances as seen by SolutionField.update()
+	private final SolutionField.Distances view = new SolutionField.Distances() {
+		@Override
+		public int get(int x, int y) {
+			return dist(x*height + y);
+		}
+	};
+
+	/**
+	 * Constructor
+	 * @param cells walls of the maze
+	 * @param solution directions and distances towards the exit, kept up to date
+	 * @param width width
+	 * @param height height
+	 */
+	public DistanceRepair(Cells cells, SolutionField solution, int width, int height) {
+		this.cells = cells;
+		this.solution = solution;
+		this.width = width;
+		this.height = height;
+		this.marked = new long[(width*height + 63) >>> 6];
+	}
+
+	/**
+	 * Removes the wall between two adjacent cells and repairs the distances
+	 * @param x coordinate of cell
+	 * @param y coordinate of cell
+	 * @param dx direction x, in { -1, 0, 1} obtained from dirsx[]
+	 * @param dy direction y, in { -1, 0, 1} obtained from dirsy[]
+	 * @return number of cells whose distance changed
+	 */
+	public int openWall(int x, int y, int dx, int dy) {
+		checkInside(x, y, dx, dy);
+		cells.deleteWall(x, y, dx, dy);
+		begin();
+		int a = x*height + y;
+		int b = (x+dx)*height + y+dy;
+		if (dist(a) > dist(b) + 1)
+			lower(a, dist(b) + 1);
+		else if (dist(b) > dist(a) + 1)
+			lower(b, dist(a) + 1);
+		commit(a, b);
+		return changed;
+	}
+
+	/**
+	 * Puts a wall between two adjacent cells and repairs the distances.
+	 * The wall is set with its bound bit like a wall of a room such that it stays when the maze is generated again.
+	 * @param x coordinate of cell
+	 * @param y coordinate of cell
+	 * @param dx direction x, in { -1, 0, 1} obtained from dirsx[]
+	 * @param dy direction y, in { -1, 0, 1} obtained from dirsy[]
+	 * @return number of cells whose distance changed
+	 */
+	public int closeWall(int x, int y, int dx, int dy) {
+		checkInside(x, y, dx, dy);
+		cells.setBoundAndWallToOne(x, y, dx, dy);
+		cells.setBoundAndWallToOne(x+dx, y+dy, -dx, -dy);
+		begin();
+		int a = x*height + y;
+		int b = (x+dx)*height + y+dy;
+		// only the cell further away may have depended on the wall
+		int u = (dist(a) == dist(b) + 1) ? a : (dist(b) == dist(a) + 1) ? b : -1;
+		if (u >= 0 && !hasCloserNeighbor(u))
+			raise(u);
+		commit(a, b);
+		return changed;
+	}
+
+	/**
+	 * Gives the number of cells whose distance changed in the last call to openWall() or closeWall()
+	 */
+	public int getChanged() {
+		return changed;
+	}
+
+	private void checkInside(int x, int y, int dx, int dy) {
+		if (x < 0 || y < 0 || x >= width || y >= height || x+dx < 0 || y+dy < 0 || x+dx >= width || y+dy >= height)
+			throw new IllegalArgumentException("wall is on the border of the maze: " + x + "," + y + " " + dx + "," + dy);
+	}
+
+	/**
+	 * Gives the current distance of cell i, the one set in this repair or otherwise the one in the field
+	 */
+	private int dist(int i) {
+		if (dense != null) {
+			if (dense[i] == 0)
+				dense[i] = solution.getDistance(i / height, i % height) + 1;
+			return dense[i] - 1;
+		}
+		int slot = find(i);
+		if (known[slot] != 0)
+			return (int) known[slot];
+		int d = solution.getDistance(i / height, i % height);
+		known[slot] = ((long) (i + 1) << 32) | d;
+		if (++knownCount > known.length >>> 1)
+			grow();
+		return d;
+	}
+
+	/**
+	 * Sets the distance of cell i without counting it as changed, for a cell that has been changed before
+	 */
+	private void putDist(int i, int d) {
+		if (dense != null) {
+			dense[i] = d + 1;
+			return;
+		}
+		int slot = find(i);
+		if (known[slot] == 0 && ++knownCount > known.length >>> 1) {
+			known[slot] = ((long) (i + 1) << 32) | d;
+			grow();
+			return;
+		}
+		known[slot] = ((long) (i + 1) << 32) | d;
+	}
+
+	private void setDist(int i, int d) {
+		putDist(i, d);
+		if (touchedCount == touched.length)
+			touched = Arrays.copyOf(touched, 2*touchedCount);
+		touched[touchedCount++] = i;
+		changed++;
+	}
+
+	/**
+	 * Gives the slot of cell i in the table of known distances, an empty slot if it is not known
+	 */
+	private int find(int i) {
+		long key = (long) (i + 1) << 32;
+		int mask = known.length - 1;
+		int h = i * 0x9e3779b9;
+		int slot = (h ^ (h >>> 16)) & mask;
+		while (known[slot] != 0 && (known[slot] & 0xffffffff00000000L) != key)
+			slot = (slot + 1) & mask;
+		return slot;
+	}
+
+	private void grow() {
+		long[] old = known;
+		if (knownCount > (width*height >>> 3)) {
+			dense = new int[width*height];
+			for (long e : old)
+				if (e != 0)
+					dense[(int) (e >>> 32) - 1] = (int) e + 1;
+			known = new long[64];
+			knownCount = 0;
+			return;
+		}
+		known = new long[2*old.length];
+		for (long e : old)
+			if (e != 0)
+				known[find((int) (e >>> 32) - 1)] = e;
+	}
+
+	/**
+	 * Starts a repair with no known distances
+	 */
+	private void begin() {
+		// do not hold on to the memory of a large repair
+		if (known.length > 1024)
+			known = new long[64];
+		else if (knownCount != 0)
+			Arrays.fill(known, 0);
+		if (touched.length > 1024)
+			touched = new int[64];
+		knownCount = 0;
+		dense = null;
+		touchedCount = 0;
+		changed = 0;
+	}
+
+	/**
+	 * Tells if cell i has a reachable neighbor one step closer to the exit that is not marked as affected
+	 */
+	private boolean hasCloserNeighbor(int i) {
+		int d = dist(i);
+		if (d == 1)
+			return true; // the exit
+		for (int dir = 0; dir != 4; dir++) {
+			int j = cells.neighbor(i, dir);
+			if (j >= 0 && dist(j) == d - 1 && !isMarked(j))
+				return true;
+		}
+		return false;
+	}
+
+	/**
+	 * Gives cell i distance d and lowers the distances behind it with a breadth first search
+	 */
+	private void lower(int i, int d) {
+		setDist(i, d);
+		int head = 0, tail = 0;
+		queue[tail++] = i;
+		while (head != tail) {
+			int c = queue[head++];
+			int dc = dist(c);
+			for (int dir = 0; dir != 4; dir++) {
+				int j = cells.neighbor(c, dir);
+				if (j < 0 || dist(j) <= dc + 1)
+					continue;
+				setDist(j, dc + 1);
+				if (tail == queue.length)
+					queue = Arrays.copyOf(queue, 2*tail);
+				queue[tail++] = j;
+			}
+		}
+	}
+
+	/**
+	 * Finds the cells that lost their shortest paths with cell u and gives them their new distances
+	 */
+	private void raise(int u) {
+		// collect the affected cells level by level, a cell is checked once all cells of the level before are known
+		int count = 0;
+		mark(u);
+		affected[count++] = u;
+		for (int k = 0; k != count; k++) {
+			int c = affected[k];
+			int dc = dist(c);
+			for (int dir = 0; dir != 4; dir++) {
+				int j = cells.neighbor(c, dir);
+				if (j < 0 || dist(j) != dc + 1 || isMarked(j) || hasCloserNeighbor(j))
+					continue;
+				mark(j);
+				if (count == affected.length)
+					affected = Arrays.copyOf(affected, 2*count);
+				affected[count++] = j;
+			}
+		}
+		// best distance of each affected cell over its unaffected neighbors
+		int nseeds = 0;
+		if (seeds.length < count)
+			seeds = new long[Math.max(count, 2*seeds.length)];
+		for (int k = 0; k != count; k++) {
+			int c = affected[k];
+			long best = MazeBuilder.INF;
+			for (int dir = 0; dir != 4; dir++) {
+				int j = cells.neighbor(c, dir);
+				if (j >= 0 && !isMarked(j))
+					best = Math.min(best, dist(j) + 1L);
+			}
+			if (best < MazeBuilder.INF)
+				seeds[nseeds++] = (best << 32) | c;
+		}
+		for (int k = 0; k != count; k++)
+			setDist(affected[k], MazeBuilder.INF);
+		Arrays.sort(seeds, 0, nseeds);
+		// breadth first search with sources of different distances: take the source or the queued cell that is closer
+		if (queue.length < count)
+			queue = new int[Math.max(count, 2*queue.length)];
+		int head = 0, tail = 0, s = 0;
+		while (s != nseeds || head != tail) {
+			int c;
+			if (head == tail || (s != nseeds && (int) (seeds[s] >>> 32) <= dist(queue[head]))) {
+				c = (int) seeds[s];
+				int d = (int) (seeds[s++] >>> 32);
+				if (d >= dist(c))
+					continue;
+				putDist(c, d);
+			} else
+				c = queue[head++];
+			int dc = dist(c);
+			for (int dir = 0; dir != 4; dir++) {
+				int j = cells.neighbor(c, dir);
+				if (j < 0 || !isMarked(j) || dist(j) <= dc + 1)
+					continue;
+				putDist(j, dc + 1);
+				// each affected cell enters the queue at most once, it gets its final distance when it is reached first
+				queue[tail++] = j;
+			}
+		}
+		for (int k = 0; k != count; k++)
+			unmark(affected[k]);
+	}
+
+	private void mark(int i) {
+		marked[i >>> 6] |= 1L << i;
+	}
+
+	private void unmark(int i) {
+		marked[i >>> 6] &= ~(1L << i);
+	}
+
+	private boolean isMarked(int i) {
+		return (marked[i >>> 6] & (1L << i)) != 0;
+	}
+
+	/**
+	 * Derives the solution of the cells next to the wall, of the cells with a new distance and of their neighbors again.
+	 * All distances the update reads are looked up before the field is written.
+	 */
+	private void commit(int a, int b) {
+		int count = 0;
+		for (int k = -2; k != touchedCount; k++) {
+			int i = (k == -2) ? a : (k == -1) ? b : touched[k];
+			int x = i / height;
+			int y = i - x*height;
+			for (int dir = -1; dir != 4; dir++) {
+				int nx = (dir < 0) ? x : x + MazeBuilder.dirsx[dir];
+				int ny = (dir < 0) ? y : y + MazeBuilder.dirsy[dir];
+				if (nx < 0 || nx >= width || ny < 0 || ny >= height)
+					continue;
+				int j = nx*height + ny;
+				if (isMarked(j))
+					continue;
+				mark(j);
+				if (count == queue.length)
+					queue = Arrays.copyOf(queue, 2*count);
+				queue[count++] = j;
+			}
+		}
+		// the direction of a cell depends on its distance and the distances of the neighbors it can reach
+		for (int k = 0; k != count; k++) {
+			int i = queue[k];
+			dist(i);
+			for (int dir = 0; dir != 4; dir++) {
+				int j = cells.neighbor(i, dir);
+				if (j >= 0)
+					dist(j);
+			}
+		}
+		for (int k = 0; k != count; k++) {
+			int i = queue[k];
+			unmark(i);
+			solution.update(cells, view, i / height, i % height);
+		}
+	}
+}
@@ -2,8 +2,6 @@
  * 
  */
 package com.android.ui;
-import android.graphics.*;
-import android.util.Log;
 ///import java.awt.Color;
 //import java.awt.Graphics;
 //import java.awt.Point;
@@ -31,12 +29,13 @@ public class FirstPersonDrawer {
 	// shared data structures
 	Cells mazecells ; // the current maze with its encoding of walls and borders
 	Cells seencells ; // cells whose walls are currently visible
-	int[][] mazedists ; // encodes the solution by the distance to the exit for each cell
 	// width and height of map are chosen according to a user given skill level
 	int mazew ; // width of current maze, i.e. number of cells for x coordinate
 	int mazeh ; // height of current maze, i.e. number of cells for y coordinate
 	// node is determined in MazeBuilder when creating the maze
 	BSPNode bsp_root ;
+	// where to draw on
+	MazeGraphics gw ;
 	
 	// angle, used in rotations
 	int ang = 0 ;  // set in redraw_play
@@ -44,9 +43,6 @@ public class FirstPersonDrawer {
 	// used in bounding box
 	int zscale = view_height/2;
 
-	// where to draw on
-	//Graphics gc ;
-	
 	final int viewz = 50;  // constant from Maze.java
 
 	/**
@@ -54,12 +50,11 @@ public class FirstPersonDrawer {
 	 * @param mazecells TODO
 	 * @param seencells TODO
 	 * @param map_scale TODO
-	 * @param mazedists TODO
 	 * @param mazew TODO
 	 * @param mazeh TODO
-	 * @param gc TODO   MEMO: unlikely to be known when constructor is called, likely to by null
+	 * @param gw graphics to draw on
 	 */
-	public FirstPersonDrawer(int width, int height, int map_unit, int step_size, Cells mazecells, Cells seencells, int map_scale, int[][] mazedists, int mazew, int mazeh, BSPNode bsp_root){
+	public FirstPersonDrawer(int width, int height, int map_unit, int step_size, Cells mazecells, Cells seencells, int map_scale, int mazew, int mazeh, BSPNode bsp_root, MazeGraphics gw){
 		view_width = width ;
 		view_height = height ;
 		this.map_unit = map_unit ;
@@ -67,10 +62,10 @@ public class FirstPersonDrawer {
 		this.mazecells = mazecells ;
 		this.seencells = seencells ;
 		this.map_scale = map_scale ;
-		this.mazedists = mazedists ;
 		this.mazew = mazew ;
 		this.mazeh = mazeh ;
 		this.bsp_root = bsp_root ; 
+		this.gw = gw ;
 		
 		ang = 0 ;
 		zscale = view_height/2;
@@ -124,13 +119,13 @@ public class FirstPersonDrawer {
 		viewy = (py*map_unit+map_unit/2) + viewd_unscale(view_dy*(step_size*walk_step-view_offset));
 		// update graphics
 		// draw black background on lower half
-		//Globals.gw.setColor(Color.BLACK);
-		//Globals.gw.fillRect(0, 0, view_width, view_height/2);
+		//gw.setColor(Color.BLACK);
+		//gw.fillRect(0, 0, view_width, view_height/2);
 		// draw dark gray background on upper half
 		
 		
 		// set color to white and draw what ever can be seen from the current position
-		//Globals.gw.setColor(Color.WHITE);
+		//gw.setColor(Color.WHITE);
 		rset.set(0, view_width-1); // reset set of ranges to set with single new element (0,width-1)
 		// debug: reset counters
 		traverse_node_ct = traverse_ssector_ct =
@@ -312,7 +307,7 @@ public class FirstPersonDrawer {
 			x1 = x2;
 			x2 = xj;
 		}
-		Point p = new Point(x1, x2);
+		MazePoint p = new MazePoint(x1, x2);
 		return (rset.intersect(p));
 	}
 	/**
@@ -390,7 +385,7 @@ public class FirstPersonDrawer {
 			return;
 		int x1i = x1;
 		int xd = x2-x1;
-		Globals.gw.setColor(seg.col);
+		gw.setColor(seg.col);
 		boolean drawn = false;
 		drawrect_late_ct++; // debug, counter
 		// loop variable is x1i, upper limit x2 is fixed
@@ -398,7 +393,7 @@ public class FirstPersonDrawer {
 			// check if there is an intersection, 
 			// if there is none proceed exit the loop, 
 			// if there is one, get it as (x1i,x2i)
-			Point p = new Point(x1i, x2);
+			MazePoint p = new MazePoint(x1i, x2);
 			if (!rset.intersect(p))
 				break;
 			x1i = p.x;
@@ -409,7 +404,7 @@ public class FirstPersonDrawer {
 					y12+(x1i-x1)*(y22-y12)/xd+1,
 					y22+(x2i-x2)*(y22-y12)/xd+1,
 					y21+(x2i-x2)*(y21-y11)/xd };
-			Globals.gw.fillPolygon(xps, yps, 4);
+			gw.fillPolygon(xps, yps, 4);
 			drawn = true;
 			rset.remove(x1i, x2i);
 			x1i = x2i+1;
@@ -437,17 +432,18 @@ public class FirstPersonDrawer {
 		if (sdy < 0)
 			sy--;
 		
-		// define constants to avoid method calls in following loop
-		int sdsx = MazeBuilder.getSign(sdx); 
-		int sdsy = MazeBuilder.getSign(sdy); 
-		int bit = (sdx != 0) ? Cells.CW_TOP : Cells.CW_LEFT;  
+		// the segment covers len cells starting at (sx,sy) in the direction of its sign
+		// a horizontal segment marks walls on top, a vertical one walls on the left
 		int len = Math.abs(sdx + sdy);  
-		// true loop variables are (sx,sy), 		
-		for (int i = 0; i != len; i++) {
-			//seencells[sx][sy] |= bit;
-			seencells.setBitToOne(sx, sy, bit) ; // updates the cell
-			sx += sdsx;
-			sy += sdsy;
-		}
+		if (len == 0)
+			return;
+		if (sdx > 0)
+			seencells.setRowToOne(sy, sx, sx+len-1, Cells.CW_TOP);
+		else if (sdx < 0)
+			seencells.setRowToOne(sy, sx-len+1, sx, Cells.CW_TOP);
+		else if (sdy > 0)
+			seencells.setColumnToOne(sx, sy, sy+len-1, Cells.CW_LEFT);
+		else
+			seencells.setColumnToOne(sx, sy-len+1, sy, Cells.CW_LEFT);
 	}
 }
@@ -3,9 +3,6 @@
  */
 package com.android.ui;
 
-import android.graphics.*;
-
-
 /**
  * This class encapsulates all functionality to draw a map of the overall maze, the set of visible walls, the solution.
  * The map is drawn on the screen in such a way that the current position remains at the center of the screen.
@@ -28,21 +25,23 @@ public class MapDrawer {
 	int step_size = map_unit/4;
 	Cells mazecells ;
 	Cells seencells ; 
-	int[][] mazedists ;
+	SolutionField solution ; // direction towards the exit per cell
 	// width and height of map are chosen according to a user given skill level
 	int mazew ; // width 
 	int mazeh ; // height
+	MazeGraphics gw ; // where to draw on
 
 	/**
 	 * Constructor
 	 * @param mazecells TODO
 	 * @param seencells TODO
 	 * @param map_scale TODO
-	 * @param mazedists TODO
+	 * @param solution directions towards the exit
 	 * @param mazew TODO
 	 * @param mazeh TODO
+	 * @param gw graphics to draw on
 	 */
-	public MapDrawer(int width, int height, int map_unit, int step_size, Cells mazecells, Cells seencells, int map_scale, int[][] mazedists, int mazew, int mazeh){
+	public MapDrawer(int width, int height, int map_unit, int step_size, Cells mazecells, Cells seencells, int map_scale, SolutionField solution, int mazew, int mazeh, MazeGraphics gw){
 		view_width = width ;
 		view_height = height ;
 		this.map_unit = map_unit ;
@@ -50,10 +49,10 @@ public class MapDrawer {
 		this.mazecells = mazecells ;
 		this.seencells = seencells ;
 		this.map_scale = map_scale ;
-		this.mazedists = mazedists ;
+		this.solution = solution ;
 		this.mazew = mazew ;
 		this.mazeh = mazeh ;
-		
+		this.gw = gw ;
 	}
 	
 	public void incrementMapScale(){
@@ -76,7 +75,7 @@ public class MapDrawer {
 	 * @param gc graphics handler to manipulate screen
 	 */
 	public void draw_map(int px, int py, int walk_step, int view_dx, int view_dy, boolean showMaze, boolean showSolution) {
-		Globals.gw.setColor(Color.WHITE);
+		gw.setColor(MazeColor.WHITE);
 		int vx = px*map_unit+map_unit/2;
 		vx += viewd_unscale(view_dx*(step_size*walk_step));
 		int vy = py*map_unit+map_unit/2;
@@ -109,9 +108,9 @@ public class MapDrawer {
 						mazecells.hasWallOnTop(x,y) :
 							mazecells.hasWallOnBottom(x, y-1));
 
-				Globals.gw.setColor(seencells.hasWallOnTop(x, y) ? Color.WHITE : Color.GRAY);
+				gw.setColor(seencells.hasWallOnTop(x, y) ? MazeColor.WHITE : MazeColor.GRAY);
 				if ((seencells.hasWallOnTop(x, y) || showMaze) && w)
-					Globals.gw.drawLine(nx1, ny1, nx2, ny1);
+					gw.drawLine(nx1, ny1, nx2, ny1);
 				
 				//s = ((seencells[x][y] & MazeBuilder.CW_LEFT) != 0);
 				//s = seencells.hasWallOnLeft(x, y) ;
@@ -120,9 +119,9 @@ public class MapDrawer {
 						mazecells.hasWallOnLeft(x, y) :
 							mazecells.hasWallOnRight((x-1), y));
 
-				Globals.gw.setColor(seencells.hasWallOnLeft(x, y) ? Color.WHITE : Color.GRAY);
+				gw.setColor(seencells.hasWallOnLeft(x, y) ? MazeColor.WHITE : MazeColor.GRAY);
 				if ((seencells.hasWallOnLeft(x, y) || showMaze) && w)
-					Globals.gw.drawLine(nx1, ny1, nx1, ny2);
+					gw.drawLine(nx1, ny1, nx1, ny2);
 			}
 		if (showSolution) {
 			//draw_solution(gc, offx, offy);
@@ -138,12 +137,12 @@ public class MapDrawer {
 	 * @param gc
 	 */
 	public void draw_currentlocation( int view_dx, int view_dy) {
-		Globals.gw.setColor(Color.RED);
+		gw.setColor(MazeColor.RED);
 		// draw oval of appropriate size at the center of the screen
 		int ctrx = view_width/2; // center x
 		int ctry = view_height/2; // center y
 		int cirsiz = map_scale/2; // circle size
-		Globals.gw.fillOval(ctrx-cirsiz/2, ctry-cirsiz/2, cirsiz, cirsiz);
+		gw.fillOval(ctrx-cirsiz/2, ctry-cirsiz/2, cirsiz, cirsiz);
 		// draw a red arrow with the oval to indicate direction
 		int arrlen = 7*map_scale/16; // arrow length
 		int aptx = ctrx + ((arrlen * view_dx) >> 16);
@@ -154,9 +153,9 @@ public class MapDrawer {
 		//int ptoflen = map_scale/8;
 		int ptofx = -( arrlen2 * view_dy) >> 16;
 		int ptofy = -( arrlen2 * view_dx) >> 16;
-		Globals.gw.drawLine(ctrx, ctry, aptx, apty);
-		Globals.gw.drawLine(aptx, apty, aptx2 + ptofx, apty2 + ptofy);
-		Globals.gw.drawLine(aptx, apty, aptx2 - ptofx, apty2 - ptofy);
+		gw.drawLine(ctrx, ctry, aptx, apty);
+		gw.drawLine(aptx, apty, aptx2 + ptofx, apty2 + ptofy);
+		gw.drawLine(aptx, apty, aptx2 - ptofx, apty2 - ptofy);
 	}
 	
 	/**
@@ -171,47 +170,28 @@ public class MapDrawer {
 		// current position on the solution path (sx,sy)
 		int sx = px;
 		int sy = py;
-		int d = mazedists[sx][sy]; // current distance towards end position
-		Globals.gw.setColor(Color.YELLOW);
+		if (solution.getDistance(sx, sy) >= MazeBuilder.INF)
+		{
+			System.out.println("ERROR: draw_solution cannot identify direction towards solution!") ;
+			return ;
+		}
+		gw.setColor(MazeColor.YELLOW);
 		// while we are more than 1 step away from the final position
-		while (d > 1) {
-			// find the direction towards the end position
-			int n = getDirectionIndexTowardsSolution(sx, sy, d) ;
-			if (4 == n)
-			{
-				System.out.println("ERROR: draw_solution cannot identify direction towards solution!") ;
-				// TODO: perform proper error handling here
-				return ;
-			}
+		while (!solution.isExit(sx, sy)) {
+			// the direction towards the end position is a single lookup
+			int n = solution.getDirection(sx, sy) ;
 			int dx = MazeBuilder.dirsx[n];
 			int dy = MazeBuilder.dirsy[n];
-			int dn = mazedists[sx+dx][sy+dy];
 			// calculate coordinates and delta values towards new coordinates
 			int nx1 = sx*map_scale + offx + map_scale/2;
 			int ny1 = view_height-1-(sy*map_scale + offy) - map_scale/2;
 			int ndx =  dx * map_scale;
 			int ndy = -dy * map_scale;
 			// do the graphics
-			Globals.gw.drawLine(nx1, ny1, nx1+ndx, ny1+ndy);
-			// update loop variables for current position (sx,sy) and distance d for next iteration
+			gw.drawLine(nx1, ny1, nx1+ndx, ny1+ndy);
+			// update loop variables for current position (sx,sy) for next iteration
 			sx += dx;
 			sy += dy;
-			d = dn;
-		}
-	}
-	
-	// same code as in Maze.java
-	private int getDirectionIndexTowardsSolution(int x, int y, int d) {
-		int[] masks = Cells.getMasks() ;
-		for (int n = 0; n < 4; n++) {
-			if (mazecells.hasMaskedBitsTrue(x,y,masks[n]))
-				continue;
-				int dx = MazeBuilder.dirsx[n];
-				int dy = MazeBuilder.dirsy[n];
-				int dn = mazedists[x+dx][y+dy];
-				if (dn < d)
-					return n ;
 		}
-		return 4 ;
 	}
 }
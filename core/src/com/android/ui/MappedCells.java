@@ -0,0 +1,209 @@
+package com.android.ui;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.ShortBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * A variant of Cells that keeps the grid outside of the Java heap, either in a direct ByteBuffer
+ * or in a file that is mapped into memory. The encoding is the same as in Cells, a short per cell in row-major order.
+ *
+ * With a file the operating system pages the grid in and out on demand such that a maze can be larger than the heap,
+ * and a maze that was generated before can be opened again without any work besides mapping the file.
+ *
+ * File layout, all values little endian:
+ * int magic, int version, int width, int height, followed by width*height shorts for the cells.
+ *
+ * A single buffer is limited to 2 GB, i.e. a grid of at most about 10^9 cells.
+ *
+ * Only the cells are kept outside of the heap. A build still computes the distances to the exit in MazeBuilder.dists,
+ * an int[][] on the heap with 4 bytes per cell, and MazeBuilderFalstad needs a byte per cell on the heap while it generates.
+ * A maze to generate and solve must therefore fit into the heap with about 5 bytes per cell,
+ * the cells only save the 2 bytes per cell of the grid itself and the generation work for a maze loaded from a file.
+ *
+ * @author adam
+ *
+ */
+public class MappedCells extends Cells {
+	static final int MAGIC = 0x414d4331; // "AMC1"
+	static final int VERSION = 1;
+	static final int HEADER_SIZE = 16;
+
+	/**
+	 * Creates cells in a direct buffer outside of the Java heap.
+	 */
+	public static final Cells.Factory FACTORY = new Cells.Factory() {
+		@Override
+		public Cells newCells(int w, int h) {
+			return new MappedCells(w, h);
+		}
+	};
+
+	private final int width;
+	private final int height;
+	private final ByteBuffer buffer; // the buffer that holds the cells, mapped if backed by a file
+	private final ShortBuffer cellbuf; // view on the cells in buffer
+
+	/**
+	 * Constructor for cells in a newly allocated direct buffer.
+	 */
+	public MappedCells(int w, int h) {
+		this(ByteBuffer.allocateDirect(checkedSize(w, h)), w, h);
+	}
+
+	/**
+	 * Constructor for cells in a given buffer, e.g. a region of a mapped file.
+	 * The grid starts at the current position of the buffer.
+	 * @param buf buffer with at least 2*w*h remaining bytes
+	 * @param w width
+	 * @param h height
+	 */
+	public MappedCells(ByteBuffer buf, int w, int h) {
+		super(w, h, false);
+		width = w;
+		height = h;
+		if (buf.remaining() < checkedSize(w, h))
+			throw new IllegalArgumentException("buffer too small for " + w + "x" + h + " cells");
+		buffer = buf;
+		cellbuf = buf.duplicate().order(ByteOrder.LITTLE_ENDIAN).asShortBuffer();
+	}
+
+	private static int checkedSize(int w, int h) {
+		long size = 2L * w * h;
+		if (size > Integer.MAX_VALUE)
+			throw new IllegalArgumentException(w + "x" + h + " cells do not fit a single buffer");
+		return (int) size;
+	}
+
+	/**
+	 * Creates a file for a grid of given dimensions and maps it into memory. An existing file is overwritten.
+	 * The grid is not initialized.
+	 * @param file to hold the grid
+	 * @param w width
+	 * @param h height
+	 * @return cells that are stored in the file
+	 * @throws IOException if the file cannot be created or mapped
+	 */
+	public static MappedCells create(File file, int w, int h) throws IOException {
+		int size = checkedSize(w, h);
+		RandomAccessFile raf = new RandomAccessFile(file, "rw");
+		try {
+			raf.setLength(0);
+			FileChannel channel = raf.getChannel();
+			MappedByteBuffer map = channel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER_SIZE + (long) size);
+			map.order(ByteOrder.LITTLE_ENDIAN);
+			map.putInt(MAGIC).putInt(VERSION).putInt(w).putInt(h);
+			return new MappedCells(map, w, h);
+		} finally {
+			// the mapping stays valid after the file is closed
+			raf.close();
+		}
+	}
+
+	/**
+	 * Maps a file created with create() into memory. Cells are paged in when they are accessed,
+	 * so opening is independent of the size of the maze.
+	 * @param file that holds the grid
+	 * @param writable true to allow changes to the grid which are written back to the file
+	 * @return cells that are stored in the file
+	 * @throws IOException if the file cannot be mapped or has an unknown format
+	 */
+	public static MappedCells open(File file, boolean writable) throws IOException {
+		RandomAccessFile raf = new RandomAccessFile(file, writable ? "rw" : "r");
+		try {
+			FileChannel channel = raf.getChannel();
+			MappedByteBuffer map = channel.map(writable ? FileChannel.MapMode.READ_WRITE : FileChannel.MapMode.READ_ONLY, 0, channel.size());
+			map.order(ByteOrder.LITTLE_ENDIAN);
+			if (map.remaining() < HEADER_SIZE || map.getInt() != MAGIC || map.getInt() != VERSION)
+				throw new IOException(file + " is not a maze grid");
+			int w = map.getInt();
+			int h = map.getInt();
+			return new MappedCells(map, w, h);
+		} finally {
+			raf.close();
+		}
+	}
+
+	/**
+	 * Creates a factory that stores the cells of the next maze in the given file
+	 * @param file to hold the grid, overwritten by each new maze
+	 * @return factory
+	 */
+	public static Cells.Factory fileFactory(final File file) {
+		return new Cells.Factory() {
+			@Override
+			public Cells newCells(int w, int h) {
+				try {
+					return create(file, w, h);
+				} catch (IOException e) {
+					throw new IllegalStateException("cannot map " + file, e);
+				}
+			}
+		};
+	}
+
+	/**
+	 * Writes changes back to the file if the cells are stored in a mapped file
+	 */
+	public void force() {
+		if (buffer instanceof MappedByteBuffer)
+			((MappedByteBuffer) buffer).force();
+	}
+
+	/////////////////////////// overridden storage operations ////////////////////////////
+	@Override
+	public void setBitToZero(int x, int y, int cw_bit) {
+		int i = x + y*width;
+		cellbuf.put(i, (short) (cellbuf.get(i) & ~cw_bit));
+	}
+
+	@Override
+	public void setBitToOne(int x, int y, int bitmask) {
+		int i = x + y*width;
+		cellbuf.put(i, (short) (cellbuf.get(i) | bitmask));
+	}
+
+	@Override
+	public boolean hasMaskedBitsTrue(int x, int y, int bitmask) {
+		return (cellbuf.get(x + y*width) & bitmask) != 0;
+	}
+
+	@Override
+	public void getRow(int y, int[] row) {
+		int offset = y*width;
+		for (int x = 0; x != width; x++)
+			row[x] = cellbuf.get(offset + x);
+	}
+
+	/**
+	 * Initialize maze such that all cells have not been visited (CW_VIRGIN), all walls are up (CW_ALL),
+	 * and borders are set as a rectangle (CW_*_BOUND).
+	 * Writes the grid row by row with bulk puts.
+	 */
+	@Override
+	public void initialize() {
+		clearRoomIndex();
+		short[] first = new short[width];
+		short[] inner = new short[width];
+		short[] last = new short[width];
+		for (int x = 0; x != width; x++) {
+			int v = CW_VIRGIN | CW_ALL;
+			if (x == 0)
+				v |= CW_LEFT_BOUND;
+			if (x == width-1)
+				v |= CW_RIGHT_BOUND;
+			inner[x] = (short) v;
+			first[x] = (short) (v | CW_TOP_BOUND);
+			last[x] = (short) (v | CW_BOT_BOUND | ((height == 1) ? CW_TOP_BOUND : 0));
+		}
+		ShortBuffer out = cellbuf.duplicate();
+		out.position(0);
+		for (int y = 0; y != height; y++)
+			out.put((y == height-1) ? last : (y == 0) ? first : inner);
+	}
+}
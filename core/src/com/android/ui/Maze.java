@@ -1,9 +1,9 @@
 package com.android.ui;
 
-//import java.awt.*;
-
-import android.graphics.Color;
-import android.util.Log;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * Class handles the user interaction for the maze. 
@@ -42,7 +42,7 @@ public class Maze {
 	static final int STATE_PLAY = 3;
 	static final int STATE_FINISH = 4;
 	
-	private int percentdone = 0; // describes progress during generation phase
+	private final AtomicInteger percentdone = new AtomicInteger(); // describes progress during generation phase, written by the builder, polled by the UI
 	public boolean showMaze;		 	// toggle switch to show overall maze on screen
 	public boolean showSolution;		// toggle switch to show solution in overall maze on screen
 	public boolean solving;			// toggle switch 
@@ -65,7 +65,10 @@ public class Maze {
 	int mazeh; // height of maze
 	// grid for maze
 	Cells mazecells ;
-	int[][] mazedists;
+	SolutionField solution; // direction and distance towards the exit per cell
+	DistanceRepair distrepair; // keeps the solution up to date when walls change during play
+	private CorridorGraph corridors; // junctions of the current maze, built on first use
+	private DistanceOracle oracle; // landmark distances of the current maze, built on first use
 	Cells seencells ;
 	//BSPNode bsp_root;
 	
@@ -80,7 +83,10 @@ public class Maze {
 	// Mazebuilder is used to calculate a new maze together with a solution
 	// The maze is computed in a separate thread. It is started in the local Build method.
 	// The calculation communicates back by calling the local newMaze() method.
-	public MazeBuilder mazebuilder;
+	public volatile MazeBuilder mazebuilder;
+	private volatile Future<?> awaited; // build ahead of time that this maze waits for, cancelled by cancelBuild()
+	// graphics the drawers render to, provided by the platform, e.g. the GraphicsWrapper on Android
+	MazeGraphics gw ;
 
 
 	
@@ -107,16 +113,32 @@ public class Maze {
 	 * Call back method for MazeBuilder to communicate newly generated maze as reaction to a call to build()
 	 * @param root node for traversals, used for the first person perspective
 	 * @param cells encodes the maze with its walls and border
-	 * @param dists encodes the solution by providing distances to the exit for each position in the maze
+	 * @param dists encodes the solution by providing distances to the exit for each position in the maze,
+	 * only used to derive the solution field and not kept
 	 * @param startx current position, x coordinate
 	 * @param starty current position, y coordinate
 	 */
 	public void newMaze(BSPNode root, Cells c, int dists[][], int startx, int starty) {
-		Log.v("newmaze", "");
+		newMaze(root, c, new SolutionField(c, dists, mazew, mazeh), startx, starty);
+	}
+
+	/**
+	 * Call back method for a maze whose solution has been derived already, e.g. a MazeResult built ahead of time
+	 * @param root node for traversals, used for the first person perspective
+	 * @param cells encodes the maze with its walls and border
+	 * @param solution the solution, kept and updated when walls change
+	 * @param startx current position, x coordinate
+	 * @param starty current position, y coordinate
+	 */
+	public void newMaze(BSPNode root, Cells c, SolutionField solution, int startx, int starty) {
+		MazeLog.v("newmaze", "");
 		showMaze = showSolution = solving = false;
 		mazecells = c ;
-		mazedists = dists;
-		seencells = new Cells(mazew+1,mazeh+1) ;
+		this.solution = solution;
+		distrepair = new DistanceRepair(c, solution, mazew, mazeh);
+		corridors = null;
+		oracle = null;
+		seencells = c.newCells(mazew+1,mazeh+1) ;
 		//bsp_root = root; // delegated to firstpersondrawer
 		//dx = 1; dy = 0;
 		setCurrentDirection(1, 0) ;
@@ -128,11 +150,9 @@ public class Maze {
 		map_mode = false;
 		// mazew and mazeh have been set in build() method before mazebuider was called to generate a new maze.
 		// reset map_scale in mapdrawer to a value of 10
-		mapdrawer = new MapDrawer(view_width,view_height,map_unit,step_size, mazecells, seencells, 10, mazedists, mazew, mazeh) ;
+		mapdrawer = new MapDrawer(view_width,view_height,map_unit,step_size, mazecells, seencells, 10, solution, mazew, mazeh, gw) ;
 	
-		firstpersondrawer = new FirstPersonDrawer(view_width,view_height,map_unit,step_size, mazecells, seencells, 10, mazedists, mazew, mazeh, root) ;
-		if(Globals.maze.firstpersondrawer == null)
-			Log.v("NULL" , "NEWMAZE");
+		firstpersondrawer = new FirstPersonDrawer(view_width,view_height,map_unit,step_size, mazecells, seencells, 10, mazew, mazeh, root, gw) ;
 		// set the current state for the state-dependent behavior
 		state = STATE_PLAY;
 	
@@ -154,9 +174,63 @@ public class Maze {
 	}
 	
 	
+	/**
+	 * Opens the wall between two adjacent cells during play, e.g. a door, and repairs the solution
+	 * @param x coordinate of cell
+	 * @param y coordinate of cell
+	 * @param dx direction x, in { -1, 0, 1} obtained from dirsx[]
+	 * @param dy direction y, in { -1, 0, 1} obtained from dirsy[]
+	 * @return number of cells whose distance to the exit changed
+	 */
+	public synchronized int openWall(int x, int y, int dx, int dy) {
+		corridors = null;
+		oracle = null;
+		return distrepair.openWall(x, y, dx, dy);
+	}
+
+	/**
+	 * Closes the wall between two adjacent cells during play and repairs the solution,
+	 * cells that are cut off from the exit get a distance of 99999999
+	 * @param x coordinate of cell
+	 * @param y coordinate of cell
+	 * @param dx direction x, in { -1, 0, 1} obtained from dirsx[]
+	 * @param dy direction y, in { -1, 0, 1} obtained from dirsy[]
+	 * @return number of cells whose distance to the exit changed
+	 */
+	public synchronized int closeWall(int x, int y, int dx, int dy) {
+		corridors = null;
+		oracle = null;
+		return distrepair.closeWall(x, y, dx, dy);
+	}
+
+	/**
+	 * Gives the corridor graph of the current maze for searches between arbitrary cells.
+	 * It is built on the first call and again after a wall has changed.
+	 * @return the graph
+	 */
+	public synchronized CorridorGraph getCorridorGraph() {
+		if (corridors == null)
+			corridors = CorridorGraph.build(mazecells, mazew, mazeh);
+		return corridors;
+	}
+
+	/**
+	 * Gives the distance oracle of the current maze for distances between arbitrary cells, e.g. for several robots.
+	 * It is built on the first call and again after a wall has changed.
+	 * @return the oracle with the default number of landmarks
+	 */
+	public synchronized DistanceOracle getDistanceOracle() {
+		if (oracle == null)
+			oracle = new DistanceOracle(mazecells, mazew, mazeh, DistanceOracle.DEFAULT_LANDMARKS);
+		return oracle;
+	}
+
+	/**
+	 * Returns to the title state after a build has been cancelled, there is no maze to draw
+	 */
 	void buildInterrupted() {
 		state = STATE_TITLE;
-		redraw();
+		percentdone.set(0);
 		mazebuilder = null;
 	}
 
@@ -176,22 +250,31 @@ public class Maze {
 
 	
 	/**
-	 * Allows external increase to percentage in generating mode with subsequence graphics update
+	 * Allows external increase to percentage in generating mode, never blocks.
+	 * The UI picks up the new value with getPercentDone().
 	 * @param pc gives the new percentage on a range [0,100]
 	 * @return true if percentage was updated, false otherwise
 	 */
 	public boolean increasePercentage(int pc) {
-		if (percentdone < pc && pc < 100) {
-			percentdone = pc;
-			if (state == STATE_GENERATING)
-			{
-				;
-			}
-			else
-				dbg("Warning: Receiving update request for percentage while not in generating state, skip redraw.") ;
-			return true ;
-		}
-		return false ;
+		if (pc >= 100)
+			return false;
+		int cur;
+		do {
+			cur = percentdone.get();
+			if (cur >= pc)
+				return false;
+		} while (!percentdone.compareAndSet(cur, pc));
+		if (state != STATE_GENERATING)
+			dbg("Warning: Receiving update request for percentage while not in generating state, skip redraw.") ;
+		return true ;
+	}
+
+	/**
+	 * Gives the progress of the current build, can be called from any thread
+	 * @return percentage on a range [0,100)
+	 */
+	public int getPercentDone() {
+		return percentdone.get();
 	}
 	/**
 	 * Helper method for redraw to draw screen during the game. If map_mode is true, i.e. the user wants to see the overall map,
@@ -266,7 +349,7 @@ public class Maze {
 		setCurrentPosition(px + dir*dx, py + dir*dy) ;
 		
 		if (isEndPosition(px,py)) {
-			Log.v("YOU", "FINISHED");
+			MazeLog.v("YOU", "FINISHED");
 			state = STATE_FINISH;
 			//redraw();
 		}
@@ -331,52 +414,33 @@ public class Maze {
 	 */
 	synchronized private void solveStep() {
 		solving = false;
-		int d = mazedists[px][py];
-		Globals.gw.setColor(Color.YELLOW);
+		gw.setColor(MazeColor.YELLOW);
+		// the next step towards the exit is a single lookup
+		// next to the final position it leads through the opening of the exit
+		rotateTo(solution.getDirection(px, py));
 		// case 1: we are not directly next to the final position
-		if (d > 1) {
-			int n = getDirectionIndexTowardsSolution(px,py,d);
-			if (n == 4)
-				dbg("HELP!");
-			rotateTo(n);
+		if (!solution.isExit(px, py)) {
 			walk(1);
 			//repaint(25);
 			solving = true;
 			return;
 		}
 		// case 2: we are one step close to the final position
-		int n;
-		int[] masks = Cells.getMasks() ;
-		for (n = 0; n < 4; n++) {
-			// skip this direction if there is a wall or border
-			if (mazecells.hasMaskedBitsGTZero(px, py, masks[n]))
-				continue;
-			// stop if position in this direction is end position
-			if (isEndPosition(px+MazeBuilder.dirsx[n], py+MazeBuilder.dirsy[n]))
-				break ;
-		}
-		rotateTo(n);
 		walk(1);
 	}
 
-
-	private int getDirectionIndexTowardsSolution(int x, int y, int d) {
-		int[] masks = Cells.getMasks() ;
-		for (int n = 0; n < 4; n++) {
-			if (mazecells.hasMaskedBitsTrue(x,y,masks[n]))
-				continue;
-				int dx = MazeBuilder.dirsx[n];
-				int dy = MazeBuilder.dirsy[n];
-				int dn = mazedists[x+dx][y+dy];
-				if (dn < d)
-					return n ;
-		}
-		return 4 ;
-	}
-
 	
 
 
+	/**
+	 * Sets the graphics that the map and first person drawers render to.
+	 * Needs to be called before a new maze is delivered by newMaze().
+	 * @param g graphics to draw on
+	 */
+	public void setGraphics(MazeGraphics g) {
+		gw = g ;
+	}
+
 	public void init() {
 		state = STATE_TITLE;
 		rset = new RangeSet();
@@ -392,19 +456,106 @@ public class Maze {
 	 * @param skill level determines the width, height and number of rooms for the new maze
 	 */
 	void build(int skill) {
+		MazeBuilder mb = prepareBuild(skill);
+		MazeLog.v("mazeb", "buildmethod");
+		try {
+			mb.build(this, mazew, mazeh, skill_rooms[skill], skill_partct[skill]);
+		} catch (CancellationException e) {
+			// the builder has returned to the title state
+		}
+		// mazebuilder calls back by calling newMaze() to return newly generated maze
+	}
+
+	/**
+	 * Takes a ready maze from the pool, or computes a new maze if the pool has none for the skill level.
+	 * The pool replaces the maze in the background.
+	 * @param skill level determines the width, height and number of rooms for the new maze
+	 * @param pool provides mazes built ahead of time
+	 */
+	void build(int skill, MazePool pool) {
+		build(skill, pool.take(skill));
+	}
+
+	/**
+	 * Uses a maze that has been built ahead of time, or computes a new maze if there is none.
+	 * @param skill level determines the width, height and number of rooms for the new maze
+	 * @param r maze built ahead of time for the skill level, may be null
+	 */
+	void build(int skill, MazeResult r) {
+		if (r == null) {
+			build(skill);
+			return;
+		}
+		state = STATE_GENERATING;
+		percentdone.set(0);
+		mazebuilder = null;
+		r.deliver(this);
+	}
+
+	/**
+	 * Takes a maze that is ready in the pool, otherwise waits for the maze the speculator builds for the skill level,
+	 * otherwise computes a new maze. While the maze waits for the speculator, getPercentDone() gives the progress
+	 * of that build and cancelBuild() cancels it.
+	 * @param skill level determines the width, height and number of rooms for the new maze
+	 * @param pool provides mazes built ahead of time
+	 * @param speculator builds the maze for the skill level selected on the title screen
+	 */
+	void build(int skill, MazePool pool, MazeSpeculator speculator) {
+		MazeResult r = pool.take(skill);
+		if (r == null) {
+			state = STATE_GENERATING;
+			percentdone.set(0);
+			mazebuilder = null;
+			r = speculator.take(skill, this);
+			if (r == null && state != STATE_GENERATING)
+				return; // cancelled while waiting
+		}
+		build(skill, r);
+	}
+
+	/**
+	 * Sets the build ahead of time that this maze waits for
+	 * @param f result of the build, null once the wait is over
+	 */
+	void await(Future<?> f) {
+		awaited = f;
+	}
+
+	/**
+	 * Starts to compute a new maze on the given executor and returns immediately.
+	 * The maze calls back newMaze() once it is done, progress is available from getPercentDone().
+	 * @param skill level determines the width, height and number of rooms for the new maze
+	 * @param executor runs the build
+	 * @return handle of the build, cancelling it returns the maze to the title state once the builder stops
+	 */
+	public Future<Void> buildAsync(int skill, Executor executor) {
+		MazeBuilder mb = prepareBuild(skill);
+		return mb.start(this, mazew, mazeh, skill_rooms[skill], skill_partct[skill], executor);
+	}
+
+	/**
+	 * Cancels the current build if there is one, including a build ahead of time the maze waits for,
+	 * safe to call from any thread
+	 */
+	public void cancelBuild() {
+		MazeBuilder mb = mazebuilder;
+		if (mb != null)
+			mb.cancel();
+		Future<?> f = awaited;
+		if (f != null && f.cancel(true))
+			buildInterrupted();
+	}
+
+	/**
+	 * Sets the generating state and obtains the builder for a new maze
+	 */
+	private MazeBuilder prepareBuild(int skill) {
 		state = STATE_GENERATING;
-		percentdone = 0;
-		//redraw();
-		mazebuilder = new MazeBuilderFalstad();
+		percentdone.set(0);
 		mazew = skill_x[skill];
 		mazeh = skill_y[skill];
-		int roomcount = skill_rooms[skill];
-		Log.v("mazeb", "buildmethod");
-		mazebuilder.build(this, mazew, mazeh, roomcount, skill_partct[skill]);
-		
-		if(Globals.maze.firstpersondrawer == null)
-			Log.v("NULL" , "IN BUILD");
-		// mazebuilder calls back by calling newMaze() to return newly generated maze
+		mazebuilder = MazeBuilderRegistry.getDefault().newBuilder(mazew, mazeh, skill_rooms[skill]);
+		return mazebuilder;
 	}
 	
 
@@ -0,0 +1,806 @@
+package com.android.ui;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.Vector;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+
+
+
+/**
+ * This class has the responsibility to create a maze of given dimensions (width, height) together with a solution based on a distance matrix.
+ * The Maze class depends on it. Communication between Maze and MazeBuilder operates as follows. Maze calls the build() method and provides width and height,
+ * or start() to perform the calculations on an executor. Maze has a call back method newMaze that
+ * this class calls to communicate a new maze and a BSP root node and a solution. 
+ * Progress is reported through Maze.increasePercentage() without blocking. A build is cancelled cooperatively with cancel(),
+ * the builder checks for it at the boundaries of the phases of run() and regularly during the BSP construction.
+ * 
+ * This code is refactored code from Maze.java by Paul Falstad, www.falstad.com, Copyright (C) 1998, all rights reserved
+ * Paul Falstad granted permission to modify and use code for teaching purposes.
+ * Refactored by Peter Kemper
+ */
+public abstract class MazeBuilder implements Runnable {
+
+	// columns mean right, bottom, left, top (as implemented in getBit())
+	// note that multiplication with -1 to a column switches directions
+	public static int[] dirsx = { 1, 0, -1, 0 };
+	public static int[] dirsy = { 0, 1, 0, -1 };
+	int width, height, startx, starty;
+	// encodes the solution as distances towards the exit, always on the heap with 4 bytes per cell
+	// whatever representation the cells factory chooses
+	int[][] dists;
+	Cells cells = new Cells(0,0); // the internal representation of a maze as a matrix of cells
+	Cells.Factory cellsFactory; // creates the cells for a new maze, null for the default Cells
+
+	Random random = new Random(); // random number generator to make randomized decisions
+	static final long DETERMINISTIC_SEED = 20984390; // seed used by the constructors for deterministic builders
+	private long seed; // seed given to setSeed()
+	private boolean seeded; // true if random has been seeded with setSeed() and not been used by a build since
+	private MazeCache cache; // results of seeded builds, may be null
+	Maze maze; // the maze that is constructed
+	private volatile Maze observer; // maze that waits for a build ahead of time and shows its progress, may be null
+	int partiters = 0;
+	Vector<Seg> seglist;
+	
+	private volatile boolean cancelled; // set by cancel(), checked by run()
+	int rooms; // number of rooms
+	int expected_partiters;
+
+	// phases of run() for which the time is recorded
+	public static final int PHASE_ROOMS = 0; // initialize cells and place rooms
+	public static final int PHASE_GENERATE = 1; // generate(), including exit and distances
+	public static final int PHASE_SEGMENTS = 2; // genSegs()
+	public static final int PHASE_NODES = 3; // genNodes()
+	public static final int PHASES = 4;
+	final long[] phaseNanos = new long[PHASES]; // time spent per phase in the last run()
+	MazeBuilderRegistry registry; // registry that created this builder, receives the phase times, may be null
+	String registryName; // name of this builder in the registry
+	
+	/**
+	 * Constructor for a randomized maze generation
+	 */
+	public MazeBuilder(){}
+	/**
+	 * Constructor with option to make maze generation deterministic or random
+	 */
+	public MazeBuilder(boolean deterministic){
+		if (true == deterministic)
+		{
+			// TODO: implement code that makes sure that if MazeBuilder.build is called for same skill level twice, same results
+			//
+//			random = new Random(20984390); //changes random to a Seeded Random number generator, so that you get the same results with
+										   //the same input
+		}
+	}
+
+	/**
+	 * Sets the factory for the cells of subsequently built mazes, e.g. to obtain CompactCells for very large mazes.
+	 * @param f factory to use, null for the default Cells
+	 */
+	public void setCellsFactory(Cells.Factory f) {
+		cellsFactory = f;
+	}
+
+	/**
+	 * Seeds the random number generator such that the next build gives the same maze for the same parameters
+	 * @param s seed
+	 */
+	public void setSeed(long s) {
+		random = new Random(s);
+		seed = s;
+		seeded = true;
+	}
+
+	/**
+	 * Sets the cache for the results of builds that start from a fresh seed.
+	 * A build that is taken from the cache does not use the random number generator,
+	 * so the builds that follow it without a new seed differ from those that follow a computed build.
+	 * @param c cache to use, null for none
+	 */
+	public void setCache(MazeCache c) {
+		cache = c;
+	}
+
+	/**
+	 * Gives the name that identifies results of this builder in a cache, the name in the registry if it comes from one
+	 */
+	public String getCacheName() {
+		return (registryName != null) ? registryName : getClass().getName();
+	}
+
+	/**
+	 * Generate an integer random number in interval [lo,hi] 
+	 * @param lo
+	 * @param hi
+	 * @return random number within given range
+	 */
+	public int randNo(int lo, int hi) {
+		//TODO: work on findbugs error message for negative min value where abs will not change sign!
+		return (Math.abs(random.nextInt()) % (hi-lo+1)) + lo;
+	}
+	
+
+	/**
+	 * Method called in genNodes to determine the minimum of all such grades. 
+	 * The method is static, i.e. it does not update internal attributes and just calculates the returned value.
+	 * @param sl
+	 * @param pe
+	 * @return
+	 */
+	private static int grade_partition(Vector<Seg> sl, Seg pe) {
+		int x  = pe.x;
+		int y  = pe.y;
+		int dx = pe.dx;
+		int dy = pe.dy;
+		int lcount = 0, rcount = 0, splits = 0;
+		int inc = 1;
+		if (sl.size() >= 100)
+			inc = sl.size() / 50;
+		// check all segments
+		for (int i = 0; i < sl.size(); i += inc) {
+			Seg se = (Seg) sl.elementAt(i);
+			int df1x = se.x-x;
+			int df1y = se.y-y;
+			int sendx = se.x + se.dx;
+			int sendy = se.y + se.dy;
+			int df2x = sendx - x;
+			int df2y = sendy - y;
+			int nx = dy;
+			int ny = -dx;
+			int dot1 = df1x * nx + df1y * ny;
+			int dot2 = df2x * nx + df2y * ny;
+			if (getSign(dot1) != getSign(dot2)) {
+				if (dot1 == 0)
+					dot1 = dot2;
+				else if (dot2 != 0) {
+					splits++;
+					continue;
+				}
+			}
+			if (dot1 > 0 ||
+					(dot1 == 0 && se.getDir() ==  pe.getDir())) {
+				rcount++;
+			} else if (dot1 < 0 ||
+					(dot1 == 0 && se.getDir() == -pe.getDir())) {
+				lcount++;
+			} else {
+				dbg("grade_partition problem: dot1 = "+dot1+", dot2 = "+dot2);
+			}
+		}
+		return Math.abs(lcount-rcount) + splits * 3;
+	}
+
+
+	static int getSign(int num) {
+		return (num < 0) ? -1 : (num > 0) ? 1 : 0;
+	}
+
+/**
+ * 
+ */
+	abstract protected void generate();
+
+/**
+ * Establish valid exit position by breaking down wall to outside area.
+ * @param remotex
+ * @param remotey
+ */
+protected void setExitPosition(int remotex, int remotey) {
+	int bit = 0;
+	if (remotex == 0)
+		bit = Cells.CW_LEFT;
+	else if (remotex == width-1)
+		bit = Cells.CW_RIGHT;
+	else if (remotey == 0)
+		bit = Cells.CW_TOP;
+	else if (remotey == height-1)
+		bit = Cells.CW_BOT;
+	else
+		dbg("Generate 1");
+	cells.setBitToZero(remotex, remotey, bit);
+	System.out.println("exit position set to zero: " + remotex + " " + remotey + " " + bit + ":" + cells.hasMaskedBitsFalse(remotex, remotey, bit));
+}
+
+	/**
+	 * Places the exit at the cell on the border that is most remote from the center of the maze,
+	 * computes the distances to the exit and sets the start position to the cell furthest away from the exit.
+	 * Used at the end of generate() once all walls are final.
+	 */
+	protected void setExitAndStartPosition() {
+		int x, y;
+		// compute temporary distances for an (exit) point (x,y) = (width/2,height/2) 
+		// which is located in the center of the maze
+		computeDists(width/2, height/2);
+
+		// find most remote point in maze somewhere on the border
+		int remotex = -1, remotey = -1, remotedist = 0;
+		for (x = 0; x != width; x++) {
+			if (dists[x][0] > remotedist) {
+				remotex = x;
+				remotey = 0;
+				remotedist = dists[x][0];
+			}
+			if (dists[x][height-1] > remotedist) {
+				remotex = x;
+				remotey = height-1;
+				remotedist = dists[x][height-1];
+			}
+		}
+		for (y = 0; y != height; y++) {
+			if (dists[0][y] > remotedist) {
+				remotex = 0;
+				remotey = y;
+				remotedist = dists[0][y];
+			}
+			if (dists[width-1][y] > remotedist) {
+				remotex = width-1;
+				remotey = y;
+				remotedist = dists[width-1][y];
+			}
+		}
+
+		// recompute distances for an exit point (x,y) = (remotex,remotey)
+		computeDists(remotex, remotey);
+
+		// start at the cell with the greatest distance
+		startx = farthestx;
+		starty = farthesty;
+
+		// make exit position at true exit 
+		setExitPosition(remotex, remotey);
+	}
+
+	/**
+	 * Sets the starting position (startx,starty) to the cell which is furthest away from the exit,
+	 * the first one in the order of x, then y if there are several.
+	 * computeDists() determines the same cell on the fly, see farthestx and farthesty.
+	 */
+	protected void setStartPositionToCellWithMaxDistance() {
+		int x;
+		int y;
+		int d = 0;
+		for (x = 0; x != width; x++)
+			for (y = 0; y != height; y++) {
+				if (dists[x][y] > d) {
+					startx = x;
+					starty = y;
+					d = dists[x][y];
+				}
+			}
+	}
+
+	static final int INF = 99999999; // distance of a cell that cannot reach the exit
+	private int[] queue; // queue of cell indices x*height + y for the breadth first search in computeDists, reused
+	static final int PARALLEL_DISTS_CELLS = 512*512; // smaller mazes compute distances sequentially
+	private int distanceParallelism = 1; // threads for computeDists
+	int farthestx, farthesty; // cell with the greatest distance found by the last computeDists
+
+	/**
+	 * Computes distances to the exit position (ax,ay) for all cells in array dists.
+	 * The exit has distance 1, cells that cannot be reached keep a distance of 99999999.
+	 * A breadth first search that visits each cell once, the queue is an int array with an entry per cell.
+	 * Also determines the cell with the greatest distance in (farthestx, farthesty),
+	 * with the same choice among cells of equal distance as setStartPositionToCellWithMaxDistance().
+	 * @param ax, exit position, x coordinate
+	 * @param ay, exit position, y coordinate
+	 */
+	protected void computeDists(int ax, int ay) {
+		if (distanceParallelism > 1 && (long) width*height >= PARALLEL_DISTS_CELLS) {
+			computeDistsParallel(ax, ay);
+			return;
+		}
+		int n = width*height;
+		for (int x = 0; x != width; x++)
+			Arrays.fill(dists[x], 0, height, INF);
+		if (queue == null || queue.length < n)
+			queue = new int[n];
+		int[] q = queue;
+		int head = 0, tail = 0;
+		dists[ax][ay] = 1;
+		q[tail++] = ax*height + ay;
+		int best = -1; // index of the farthest cell so far
+		int bestd = 0;
+		while (head != tail) {
+			int i = q[head++];
+			int x = i / height;
+			int y = i - x*height;
+			int d = dists[x][y];
+			// cells come in order of increasing distance, the first in x, y order wins among equal distances
+			if (d > bestd || (d == bestd && i < best)) {
+				bestd = d;
+				best = i;
+			}
+			for (int dir = 0; dir != 4; dir++) {
+				int j = cells.neighbor(x, y, dir);
+				if (j < 0)
+					continue;
+				int nx = j / height;
+				int ny = j - nx*height;
+				if (dists[nx][ny] == INF) {
+					dists[nx][ny] = d+1;
+					q[tail++] = j;
+				}
+			}
+		}
+		farthestx = best / height;
+		farthesty = best % height;
+	}
+
+	/**
+	 * Computes the same distances and farthest cell as computeDists with a parallel breadth first search
+	 */
+	private void computeDistsParallel(int ax, int ay) {
+		ForkJoinPool pool = new ForkJoinPool(distanceParallelism);
+		try {
+			int best = new ParallelDistances(cells, width, height, dists).compute(ax, ay, pool);
+			farthestx = best / height;
+			farthesty = best % height;
+		} finally {
+			pool.shutdown();
+		}
+	}
+
+	/**
+	 * Sets the number of threads that compute distances for mazes of at least 512x512 cells.
+	 * The distances are the same for any number of threads.
+	 * The threads run in a ForkJoinPool, on a platform without it the computation stays sequential.
+	 * @param parallelism number of threads, 1 for a sequential computation
+	 */
+	public void setDistanceParallelism(int parallelism) {
+		distanceParallelism = MazeBuilderRegistry.hasForkJoin() ? Math.max(1, parallelism) : 1;
+	}
+
+
+	/**
+	 * Tries to put as many rooms into the maze as requested.
+	 * The number of failed tries is limited to 250 or 5 tries per requested room if that is more, 
+	 * such that large mazes can have many more rooms. Each try takes constant time.
+	 */
+	void placeRooms() {
+		int tries = Math.max(250, 5*rooms);
+		while (tries > 0 && rooms > 0) {
+			if (placeRoom())
+				rooms--;
+			else
+				tries--;
+		}
+	}
+
+	/**
+	 * Allocates space for a room of random dimensions in the maze.
+	 * @return true if room is successfully placed, false otherwise
+	 */
+	private boolean placeRoom() {
+		// get width and height of random size that are not too large
+		// if too large return as a failed attempt
+		int rw = randNo(3, 8);
+		int rh = randNo(3, 8);
+		if (rw >= width-4)
+			return false;
+		if (rh >= height-4)
+			return false;
+		// proceed for a given width and height
+		// obtain a random position (rx,ry) such that room is located on as a rectangle with (rx,ry) and (rxl,ryl) as corner points
+		// upper bound is chosen such that width and height of room fits maze area.
+		int rx = randNo(1, width-rw-1);
+		int ry = randNo(1, height-rh-1);
+		int rxl = rx+rw-1;
+		int ryl = ry+rh-1;
+		// check all cells in this area if they already belong to a room
+		// if this is the case, return false for a failed attempt
+		if (cells.areaOverlapsWithRoom(rx, ry, rxl, ryl))
+			return false ;
+		// since the area is available, mark it for this room and remove all walls
+		// from this on it is clear that we can place the room on the maze
+		cells.markAreaAsRoom(rw, rh, rx, ry, rxl, ryl, random); 
+		return true;
+	}
+
+
+
+
+
+
+	static final int map_unit = 128;
+	int colchange;
+
+	/**
+	 * Computes the list of wall segments from the cells, the segments are the input for the BSP construction in genNodes.
+	 */
+	void genSegs() {
+		int x, y;
+		Vector<Seg> sl = new Vector<Seg>();
+		// runs of walls are located with the bulk search operations on cells
+		// a segment ends where its wall ends or where a crossing wall begins
+		for (y = 0; y != height; y++) {
+			x = cells.findInRow(y, 0, width, Cells.CW_TOP, true);
+			while (x < width) {
+				int startx = x;
+				x = cells.findInRow(y, startx+1, width, Cells.CW_TOP, false);
+				x = cells.findInRow(y, startx+1, x, Cells.CW_LEFT, true);
+				sl.addElement(new Seg(x*map_unit, y*map_unit,
+						(startx-x)*map_unit, 0, dists[startx][y], colchange));
+				x = cells.findInRow(y, x, width, Cells.CW_TOP, true);
+			}
+			x = cells.findInRow(y, 0, width, Cells.CW_BOT, true);
+			while (x < width) {
+				int startx = x;
+				x = cells.findInRow(y, startx+1, width, Cells.CW_BOT, false);
+				x = cells.findInRow(y, startx+1, x, Cells.CW_LEFT, true);
+				sl.addElement(new Seg(startx*map_unit, (y+1)*map_unit,
+						(x-startx)*map_unit, 0,
+						dists[startx][y], colchange));
+				x = cells.findInRow(y, x, width, Cells.CW_BOT, true);
+			}
+		} 
+		for (x = 0; x != width; x++) {
+			y = cells.findInColumn(x, 0, height, Cells.CW_LEFT, true);
+			while (y < height) {
+				int starty = y;
+				y = cells.findInColumn(x, starty+1, height, Cells.CW_LEFT, false);
+				y = cells.findInColumn(x, starty+1, y, Cells.CW_TOP, true);
+				sl.addElement(new Seg(x*map_unit, starty*map_unit,
+						0, (y-starty)*map_unit,
+						dists[x][starty], colchange));
+				y = cells.findInColumn(x, y, height, Cells.CW_LEFT, true);
+			}
+			y = cells.findInColumn(x, 0, height, Cells.CW_RIGHT, true);
+			while (y < height) {
+				int starty = y;
+				y = cells.findInColumn(x, starty+1, height, Cells.CW_RIGHT, false);
+				y = cells.findInColumn(x, starty+1, y, Cells.CW_TOP, true);
+				sl.addElement(new Seg((x+1)*map_unit, y*map_unit,
+						0, (starty-y)*map_unit,
+						dists[x][starty], colchange));
+				y = cells.findInColumn(x, y, height, Cells.CW_RIGHT, true);
+			}
+		}
+		seglist = sl;
+		setPartitionBitForCertainSegments(sl);
+		cells.setTopToOne(0, 0);
+	}
+
+	/**
+	 * Set the partition bit to true for segments on the border and the direction is 0
+	 * @param sl
+	 */
+	private void setPartitionBitForCertainSegments(Vector<Seg> sl) {
+		for (int i = 0; i != sl.size(); i++) {
+			Seg se = sl.elementAt(i);
+			if (((se.x == 0 || se.x == width ) && se.dx == 0) ||
+					((se.y == 0 || se.y == height) && se.dy == 0))
+				se.partition = true;
+		}
+	}
+
+
+
+	/**
+	 * Builds the BSP tree for the segments computed in genSegs
+	 * @return root node of the BSP tree
+	 */
+	BSPNode genNodes() {
+		return genNodes(seglist);
+	}
+
+	/**
+	 * 
+	 * @param sl
+	 * @return
+	 */
+	private BSPNode genNodes(Vector<Seg> sl) {
+		// if there is no segment with a partition bit set to false, there is nothing else to do and we are at a leaf node
+		if (countNonPartitions(sl) == 0)
+			return new BSPLeaf(sl);
+		// from the ones that have a partition bit set to false, pick a candidate with a low grade
+		Seg pe = findPartitionCandidate(sl);
+		// work on segment pe
+		// mark pe as partitioned
+		pe.partition = true;
+		int x  = pe.x;
+		int y  = pe.y;
+		int dx = pe.dx;
+		int dy = pe.dy;
+		Vector<Seg> lsl = new Vector<Seg>();
+		Vector<Seg> rsl = new Vector<Seg>();
+		for (int i = 0; i != sl.size(); i++) {
+			Seg se = (Seg) sl.elementAt(i);
+			int df1x = se.x - x;
+			int df1y = se.y - y;
+			int sendx = se.x + se.dx;
+			int sendy = se.y + se.dy;
+			int df2x = sendx - x;
+			int df2y = sendy - y;
+			int nx = dy;
+			int ny = -dx;
+			int dot1 = df1x * nx + df1y * ny;
+			int dot2 = df2x * nx + df2y * ny;
+			if (getSign(dot1) != getSign(dot2)) {
+				if (dot1 == 0)
+					dot1 = dot2;
+				else if (dot2 != 0) {
+					// we need to split this
+					int spx = se.x;
+					int spy = se.y;
+					if (dx == 0)
+						spx = x;
+					else
+						spy = y;
+					Seg sps1 = new Seg(se.x, se.y, spx-se.x, spy-se.y, se.dist, colchange);
+					Seg sps2 = new Seg(spx, spy, sendx-spx, sendy-spy, se.dist, colchange);
+					if (dot1 > 0) {
+						rsl.addElement(sps1);
+						lsl.addElement(sps2);
+					} else {
+						rsl.addElement(sps2);
+						lsl.addElement(sps1);
+					}
+					sps1.partition = sps2.partition = se.partition;
+					continue;
+				}
+			}
+			if (dot1 > 0 || (dot1 == 0 && se.getDir() == pe.getDir())) {
+				rsl.addElement(se);
+				if (dot1 == 0)
+					se.partition = true;
+			} else if (dot1 < 0 || (dot1 == 0 && se.getDir() == -pe.getDir())) { 
+				lsl.addElement(se);
+				if (dot1 == 0)
+					se.partition = true;
+			} else {
+				dbg("error xx 1 "+dot1);
+			}
+		}
+		if (lsl.size() == 0)
+			return new BSPLeaf(rsl);
+		if (rsl.size() == 0)
+			return new BSPLeaf(lsl);
+		return new BSPBranch(x, y, dx, dy, genNodes(lsl), genNodes(rsl)); // recursion on both branches
+	}
+
+	/**
+	 * @param sl
+	 * @param pe
+	 * @return
+	 */
+	private Seg findPartitionCandidate(Vector<Seg> sl) {
+		Seg pe = null ;
+		int bestgrade = 5000; // used to compute the minimum of all observed grade values, set to some high initial value
+		int maxtries = 50; // constant, only used to determine skip
+		// consider a subset of segments proportional to the number of tries, here 50, seems to randomize the access a bit
+		int skip = (sl.size() / maxtries);
+		if (skip == 0)
+			skip = 1;
+		for (int i = 0; i < sl.size(); i += skip) {
+			Seg pk = (Seg) sl.elementAt(i);
+			if (pk.partition)
+				continue;
+			partiters++;
+			if ((partiters & 31) == 0) {
+				checkCancelled();
+				Maze m = (maze != null) ? maze : observer;
+				if (m != null)
+					m.increasePercentage(partiters*100/expected_partiters);
+			}
+			int grade = grade_partition(sl, pk);
+			if (grade < bestgrade) {
+				bestgrade = grade;
+				pe = pk; // determine segment with smallest grade
+			}
+		}
+		return pe;
+	}
+
+	/**
+	 * Counts how many elements in the segment vector have their partition bit set to false
+	 * @param sl
+	 * @return
+	 */
+	private int countNonPartitions(Vector<Seg> sl) {
+		int result = 0 ;
+		for (int i = 0; i != sl.size(); i++)
+			if (!(sl.elementAt(i)).partition)
+				result++;
+		return result;
+	}
+
+	private static void dbg(String str) {
+		System.out.println("MazeBuilder: "+str);
+	}
+
+
+
+	/**
+	 * Fill the given maze object with a newly computed maze according to parameter settings
+	 * @param mz maze to be filled
+	 * @param w width of requested maze
+	 * @param h height of requested maze
+	 * @param roomct number of rooms
+	 * @param pc number of expected partiters
+	 */
+	public void build(Maze mz, int w, int h, int roomct, int pc) {
+		setup(mz, w, h, roomct, pc);
+		MazeLog.v("build", "mb");
+		run();
+	}
+
+	/**
+	 * Fill the given maze object with a newly computed maze on the given executor.
+	 * Cancelling the returned future cancels the build, the maze is not filled then.
+	 * @param mz maze to be filled
+	 * @param w width of requested maze
+	 * @param h height of requested maze
+	 * @param roomct number of rooms
+	 * @param pc number of expected partiters
+	 * @param executor runs the build
+	 * @return handle of the build, done once newMaze has been called
+	 */
+	public Future<Void> start(Maze mz, int w, int h, int roomct, int pc, Executor executor) {
+		setup(mz, w, h, roomct, pc);
+		FutureTask<Void> task = new FutureTask<Void>(this, null) {
+			@Override
+			public boolean cancel(boolean mayInterruptIfRunning) {
+				MazeBuilder.this.cancel();
+				return super.cancel(mayInterruptIfRunning);
+			}
+		};
+		executor.execute(task);
+		return task;
+	}
+
+	/**
+	 * Sets the parameters for the next run() without starting the computation. 
+	 * Used by build() and by benchmarks that drive the individual phases of run().
+	 * @param mz maze to be filled
+	 * @param w width of requested maze
+	 * @param h height of requested maze
+	 * @param roomct number of rooms
+	 * @param pc number of expected partiters
+	 */
+	void setup(Maze mz, int w, int h, int roomct, int pc) {
+		width = w;
+		height = h;
+		maze = mz;
+		rooms = roomct;
+		cancelled = false;
+		cells = (cellsFactory == null) ? new Cells(w,h) : cellsFactory.newCells(w, h) ;
+		dists = new int[w][h];
+		expected_partiters = pc;
+	}
+
+	/**
+	 * Main method to run construction of a new maze, called by build() in the current thread
+	 * and by the future of start() on its executor.
+	 * @throws CancellationException if the build is cancelled before newMaze is called
+	 */
+	public void run() {
+		try {
+			MazeResult r = computeOrLookup();
+			// communicate results back to maze object
+			MazeLog.v("before", "newmaze");
+			r.deliver(maze);
+			MazeLog.v("Mazebuilder", "postNewmaze");
+		} catch (CancellationException e) {
+			maze.buildInterrupted();
+			throw e;
+		}
+	}
+
+	/**
+	 * Computes a new maze without a maze to fill, e.g. to build mazes ahead of time.
+	 * Runs in the current thread, progress is only reported once a maze is given to reportProgressTo().
+	 * @param w width of requested maze
+	 * @param h height of requested maze
+	 * @param roomct number of rooms
+	 * @param pc number of expected partiters
+	 * @return the new maze
+	 * @throws CancellationException if the build is cancelled
+	 */
+	public MazeResult buildResult(int w, int h, int roomct, int pc) {
+		setup(null, w, h, roomct, pc);
+		return computeOrLookup();
+	}
+
+	/**
+	 * Takes the result from the cache if this build starts from a fresh seed and the cache has it,
+	 * otherwise computes it and adds it to the cache if possible
+	 * @return the new maze, with cells and distances of its own
+	 */
+	private MazeResult computeOrLookup() {
+		if (cache == null || !seeded)
+			return compute();
+		String name = getCacheName();
+		MazeResult r = cache.get(name, width, height, rooms, seed);
+		if (r != null) {
+			seeded = false;
+			return r.copy(cells);
+		}
+		int roomct = rooms; // placeRooms() counts rooms down
+		r = compute();
+		cache.put(name, width, height, roomct, seed, r);
+		return r.copy(cells.newCells(width, height));
+	}
+
+	/**
+	 * Performs the phases of a build with the parameters given to setup()
+	 * @return the new maze
+	 */
+	private MazeResult compute() {
+		MazeLog.v("Mazebuilder", "start");
+
+		seeded = false; // the random number generator is in use from here on
+		colchange = randNo(0, 255);
+		long t0 = System.nanoTime();
+		// create a maze where all walls and borders are up
+		cells.initialize();
+		placeRooms();
+		long t1 = System.nanoTime();
+		checkCancelled();
+		// generate maze
+		generate();
+		MazeLog.v("post", "generate");
+		long t2 = System.nanoTime();
+		checkCancelled();
+		genSegs();
+		long t3 = System.nanoTime();
+		checkCancelled();
+		partiters = 0;
+		BSPNode root = genNodes();
+		long t4 = System.nanoTime();
+		checkCancelled();
+		phaseNanos[PHASE_ROOMS] = t1 - t0;
+		phaseNanos[PHASE_GENERATE] = t2 - t1;
+		phaseNanos[PHASE_SEGMENTS] = t3 - t2;
+		phaseNanos[PHASE_NODES] = t4 - t3;
+		// builds ahead of time run at a low priority and would distort the profiles
+		if (registry != null && maze != null)
+			registry.record(registryName, width, height, phaseNanos);
+		// dbg("partiters = "+partiters);
+		return new MazeResult(root, cells, new SolutionField(cells, dists, width, height), startx, starty, width, height);
+	}
+
+	/**
+	 * Gives the time spent in a phase of the last run()
+	 * @param phase one of PHASE_ROOMS, PHASE_GENERATE, PHASE_SEGMENTS, PHASE_NODES
+	 * @return time in nanoseconds
+	 */
+	public long getPhaseNanos(int phase) {
+		return phaseNanos[phase];
+	}
+
+	/**
+	 * Cancels the current build. The builder stops at the next check, run() then throws a CancellationException
+	 * and the maze is not filled. Safe to call from any thread.
+	 */
+	public void cancel() {
+		cancelled = true;
+	}
+
+	public boolean isCancelled() {
+		return cancelled;
+	}
+
+	/**
+	 * Lets a maze show the progress of a build that has no maze to fill, safe to call from any thread
+	 * @param m maze that waits for the result of buildResult()
+	 */
+	public void reportProgressTo(Maze m) {
+		observer = m;
+	}
+
+	/**
+	 * Stops the build if it has been cancelled or its thread has been interrupted
+	 * @throws CancellationException if the build has been cancelled
+	 */
+	protected void checkCancelled() {
+		if (cancelled || Thread.currentThread().isInterrupted())
+			throw new CancellationException("maze build cancelled");
+	}
+
+
+
+}
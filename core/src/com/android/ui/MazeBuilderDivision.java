@@ -0,0 +1,152 @@
+package com.android.ui;
+
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * This class generates a maze by recursive division. All walls that are not protected by a bound are taken down first,
+ * then the resulting chamber is divided by a wall with a single door, and both halves are divided again until
+ * chambers are one cell wide or high. Besides the initial sweep the work is proportional to the number of walls that are placed.
+ *
+ * Rooms are obstacles inside a chamber: a dividing wall runs through the rows or columns of a room but is not placed
+ * where it touches a room cell. The room splits the wall into segments and each segment gets a door of its own,
+ * so every cell that was reachable before the wall was placed stays reachable and the chamber is divided as if there was no room.
+ *
+ * Chambers that result from a horizontal wall are divided in parallel on a fork/join pool. They consist of disjoint rows
+ * and all implementations of Cells keep rows in separate words, so both halves can be written concurrently.
+ * Each chamber has its own random number generator that is seeded by its parent chamber, so the maze only depends
+ * on the seed and not on the number of threads.
+ * @author adam
+ *
+ */
+public class MazeBuilderDivision extends MazeBuilder {
+	static final int PARALLEL_AREA = 64*64; // chambers below this area are divided in the current thread
+
+	private final int parallelism;
+
+	public MazeBuilderDivision(){
+		this(Runtime.getRuntime().availableProcessors());
+	}
+
+	public MazeBuilderDivision(boolean deterministic){
+		this();
+		if (deterministic){
+			setSeed(DETERMINISTIC_SEED);
+		}
+	}
+
+	/**
+	 * Constructor
+	 * @param parallelism number of threads that divide chambers
+	 */
+	public MazeBuilderDivision(int parallelism){
+		this.parallelism = Math.max(1, parallelism);
+	}
+
+	protected void generate() {
+		clearInterior();
+		ForkJoinPool pool = new ForkJoinPool(parallelism);
+		try {
+			pool.invoke(new Divide(0, 0, width-1, height-1, random.nextLong()));
+		} finally {
+			pool.shutdown();
+		}
+
+		// pick the exit on the border and the start position furthest away from it
+		setExitAndStartPosition();
+	}
+
+	/**
+	 * Takes down all walls without a bound, which leaves the outer border and the rooms but for their doors
+	 */
+	private void clearInterior() {
+		for (int y = 0; y != height; y++)
+			for (int x = 0; x != width; x++) {
+				cells.setVirginToZero(x, y);
+				for (int dir = 0; dir != 2; dir++) { // right and bottom as in dirsx, dirsy
+					if (cells.hasMaskedBitsFalse(x, y, Cells.masks[dir] << Cells.CW_BOUND_SHIFT))
+						cells.deleteWall(x, y, dirsx[dir], dirsy[dir]);
+				}
+			}
+	}
+
+	/**
+	 * Divides the chamber (x0,y0) to (x1,y1), both corners inclusive
+	 */
+	private class Divide extends RecursiveAction {
+		private static final long serialVersionUID = 1L;
+		private final int x0, y0, x1, y1;
+		private final long seed;
+
+		Divide(int x0, int y0, int x1, int y1, long seed) {
+			this.x0 = x0;
+			this.y0 = y0;
+			this.x1 = x1;
+			this.y1 = y1;
+			this.seed = seed;
+		}
+
+		@Override
+		protected void compute() {
+			divide(x0, y0, x1, y1, new Random(seed));
+		}
+	}
+
+	/**
+	 * Divides a chamber until it is one cell wide or high.
+	 * Recurses into one half and continues with the other half in the loop.
+	 */
+	private void divide(int x0, int y0, int x1, int y1, Random r) {
+		while (x0 < x1 && y0 < y1) {
+			int w = x1 - x0 + 1;
+			int h = y1 - y0 + 1;
+			if (w < h || (w == h && r.nextBoolean())) {
+				// wall below a random row
+				int line = y0 + r.nextInt(h - 1);
+				addWall(x0, line, x1, line, 0, 1, r);
+				long seed1 = r.nextLong();
+				long seed2 = r.nextLong();
+				if (w*h >= PARALLEL_AREA) {
+					ForkJoinTask.invokeAll(new Divide(x0, y0, x1, line, seed1), new Divide(x0, line+1, x1, y1, seed2));
+					return;
+				}
+				divide(x0, y0, x1, line, new Random(seed1));
+				y0 = line+1;
+				r = new Random(seed2);
+			} else {
+				// wall right of a random column
+				int line = x0 + r.nextInt(w - 1);
+				addWall(line, y0, line, y1, 1, 0, r);
+				divide(x0, y0, line, y1, r);
+				x0 = line+1;
+			}
+		}
+	}
+
+	/**
+	 * Places a wall on the given side of the cells (x0,y0) to (x1,y1), which form a row or a column.
+	 * Cells next to a room cell on either side of the wall are left alone, the room cuts the wall into segments
+	 * and each segment gets a door at a random position.
+	 */
+	private void addWall(int x0, int y0, int x1, int y1, int dx, int dy, Random r) {
+		int sx = dy, sy = dx; // step along the wall
+		boolean rooms = cells.areaContainsRoom(x0, y0, x1+dx, y1+dy); // without rooms the wall is a single segment
+		int start = -1; // first cell of the current segment along the wall, -1 if there is none
+		for (int k = 0, n = (x1 - x0) + (y1 - y0) + 1; k <= n; k++) {
+			int x = x0 + k*sx, y = y0 + k*sy;
+			boolean free = k != n && (!rooms || (!cells.isInRoom(x, y) && !cells.isInRoom(x+dx, y+dy)));
+			if (free && start < 0)
+				start = k;
+			else if (!free && start >= 0) {
+				int door = start + r.nextInt(k - start);
+				for (int j = start; j != k; j++) {
+					if (j != door)
+						cells.addWall(x0 + j*sx, y0 + j*sy, dx, dy);
+				}
+				start = -1;
+			}
+		}
+	}
+}
@@ -0,0 +1,190 @@
+package com.android.ui;
+
+/**
+ * This class generates a maze with Eller's algorithm. The maze is generated one row at a time and only the
+ * set memberships of the current row are kept, i.e. memory is linear in the width of the maze and independent of its height.
+ *
+ * Each row goes through three steps: adjacent cells of different sets are joined at random,
+ * every set gets at least one random passage down to the next row, and cells of the next row without a passage from above
+ * start new sets. The last row joins all remaining sets, so the maze is perfect.
+ * Sets are kept as a union-find structure over the positions in the current row.
+ *
+ * Rows are handed to a RowSink as soon as they are final. Used as a regular MazeBuilder, rows go into the cells of the maze.
+ * With stream() rows can go anywhere, e.g. into ChunkedCells or MappedCells for mazes that do not fit the heap,
+ * or directly to a consumer that renders or solves the part of the maze that exists so far.
+ *
+ * Eller's algorithm has no notion of rooms, a maze generated with this builder has no rooms.
+ * @author adam
+ *
+ */
+public class MazeBuilderEller extends MazeBuilder {
+
+	/**
+	 * Receives the rows of a maze in the order of their generation.
+	 */
+	public interface RowSink {
+		/**
+		 * Called once per row with y = 0, 1, 2, ...
+		 * @param y row
+		 * @param row encoding of cell (x,y) in row[x] for 0 <= x < width, same bits as in Cells.
+		 * The array is reused for the next row, a sink that keeps it needs to copy it.
+		 */
+		void row(int y, int[] row);
+	}
+
+	private long bits; // random bits not used so far
+	private int bitsLeft;
+
+	public MazeBuilderEller(){}
+
+	public MazeBuilderEller(boolean deterministic){
+		if (deterministic){
+			setSeed(DETERMINISTIC_SEED);
+		}
+	}
+
+	/**
+	 * Creates a sink that takes down the walls of each row in the given cells.
+	 * The cells need to be initialized with all walls up.
+	 * @param c cells of the maze
+	 * @return sink
+	 */
+	public static RowSink cellsSink(final Cells c) {
+		final int w = c.getWidth();
+		final int h = c.getHeight();
+		return new RowSink() {
+			@Override
+			public void row(int y, int[] row) {
+				for (int x = 0; x != w; x++) {
+					if ((row[x] & Cells.CW_RIGHT) == 0 && x < w-1)
+						c.deleteWall(x, y, 1, 0);
+					if ((row[x] & Cells.CW_BOT) == 0 && y < h-1)
+						c.deleteWall(x, y, 0, 1);
+					c.setVirginToZero(x, y);
+				}
+			}
+		};
+	}
+
+	/**
+	 * Rooms are not supported, so none are placed.
+	 */
+	@Override
+	void placeRooms() {
+	}
+
+	protected void generate() {
+		stream(width, height, cellsSink(cells));
+		// pick the exit on the border and the start position furthest away from it
+		setExitAndStartPosition();
+	}
+
+	/**
+	 * Generates a maze of given dimensions row by row and hands each row to the sink.
+	 * Memory is proportional to w, the height can be as large as Integer.MAX_VALUE.
+	 * Rows carry walls and outer bounds, the maze has no exit.
+	 * @param w width
+	 * @param h height
+	 * @param sink receives the rows
+	 */
+	public void stream(int w, int h, RowSink sink) {
+		int[] parent = new int[w]; // union-find over positions of the current row
+		int[] nextParent = new int[w]; // same for the next row
+		int[] count = new int[w]; // number of cells per set that have not been decided on yet
+		int[] firstBelow = new int[w]; // position of the first passage down per set, -1 if none
+		boolean[] open = new boolean[w]; // true if the wall on the right of a cell is down
+		boolean[] drop = new boolean[w]; // true if the wall on the bottom of a cell is down
+		boolean[] prevDrop = new boolean[w]; // same for the row above
+		int[] row = new int[w];
+		int x;
+		for (x = 0; x != w; x++)
+			parent[x] = x;
+		for (int y = 0; y != h; y++) {
+			boolean last = (y == h-1);
+			// join adjacent cells that belong to different sets, in the last row all of them
+			for (x = 0; x != w-1; x++) {
+				int a = find(parent, x);
+				int b = find(parent, x+1);
+				open[x] = (a != b && (last || randomBit()));
+				if (open[x])
+					parent[b] = a;
+			}
+			open[w-1] = false;
+			// each set continues in the next row through at least one passage down
+			if (last) {
+				for (x = 0; x != w; x++)
+					drop[x] = false;
+			} else {
+				for (x = 0; x != w; x++) {
+					count[x] = 0;
+					firstBelow[x] = -1;
+				}
+				for (x = 0; x != w; x++)
+					count[find(parent, x)]++;
+				for (x = 0; x != w; x++) {
+					int r = find(parent, x);
+					count[r]--;
+					// a set without a passage so far gets one at its last cell
+					drop[x] = randomBit() || (count[r] == 0 && firstBelow[r] < 0);
+					if (drop[x] && firstBelow[r] < 0)
+						firstBelow[r] = x;
+				}
+			}
+			// emit the row
+			for (x = 0; x != w; x++) {
+				int v = Cells.CW_ALL;
+				if (open[x])
+					v &= ~Cells.CW_RIGHT;
+				if (x > 0 && open[x-1])
+					v &= ~Cells.CW_LEFT;
+				if (drop[x])
+					v &= ~Cells.CW_BOT;
+				if (prevDrop[x])
+					v &= ~Cells.CW_TOP;
+				if (y == 0)
+					v |= Cells.CW_TOP_BOUND;
+				if (last)
+					v |= Cells.CW_BOT_BOUND;
+				if (x == 0)
+					v |= Cells.CW_LEFT_BOUND;
+				if (x == w-1)
+					v |= Cells.CW_RIGHT_BOUND;
+				row[x] = v;
+			}
+			sink.row(y, row);
+			if (last)
+				break;
+			// cells with a passage from above stay in the set of that cell, all others start a set of their own
+			for (x = 0; x != w; x++)
+				nextParent[x] = drop[x] ? firstBelow[find(parent, x)] : x;
+			int[] t = parent;
+			parent = nextParent;
+			nextParent = t;
+			boolean[] d = prevDrop;
+			prevDrop = drop;
+			drop = d;
+		}
+	}
+
+	/**
+	 * Gives a random bit, bits are drawn 64 at a time from the random number generator
+	 */
+	private boolean randomBit() {
+		if (bitsLeft == 0) {
+			bits = random.nextLong();
+			bitsLeft = 64;
+		}
+		bitsLeft--;
+		boolean b = (bits & 1) != 0;
+		bits >>>= 1;
+		return b;
+	}
+
+	private static int find(int[] parent, int x) {
+		while (parent[x] != x) {
+			parent[x] = parent[parent[x]];
+			x = parent[x];
+		}
+		return x;
+	}
+}
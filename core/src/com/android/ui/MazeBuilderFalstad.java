@@ -1,7 +1,5 @@
 package com.android.ui;
 
-import java.util.Random;
-
 /**
  * This is the old maze generation algorithm written by Falstad.
  * My maze generation algorithm is found in MazeBuilderPrim.
@@ -15,7 +13,7 @@ public class MazeBuilderFalstad extends MazeBuilder{
 	
 	public MazeBuilderFalstad (boolean deterministic){
 		if (deterministic){
-			random = new Random(20984390);
+			setSeed(DETERMINISTIC_SEED);
 		}
 	}
 	
@@ -26,6 +24,8 @@ public class MazeBuilderFalstad extends MazeBuilder{
 		int y = 0;       // no need to memorize initial y coordinate
 		int dir = 0;
 		int origdir = dir;
+		// direction in which each cell has been entered, to backtrack along the path of the walk, a byte per cell
+		byte[] origdirs = new byte[width*height];
 		cells.setVirginToZero(x, y);
 		while (true) { 
 			int dx = dirsx[dir], dy = dirsy[dir];
@@ -35,7 +35,7 @@ public class MazeBuilderFalstad extends MazeBuilder{
 					// if back at origin (firstx,0) stop.
 					if (x == firstx && y == 0)
 						break; // exit loop at this point
-					int odr = origdirs[x][y];
+					int odr = origdirs[x*height + y];
 					dx = dirsx[odr];
 					dy = dirsy[odr];
 					x -= dx;
@@ -47,50 +47,13 @@ public class MazeBuilderFalstad extends MazeBuilder{
 				x += dx;
 				y += dy;
 				cells.setVirginToZero(x, y);
-				origdirs[x][y] = dir;
+				origdirs[x*height + y] = (byte) dir;
 				origdir = dir = randNo(0, 3);
 			}
 		} 
 
-		// compute temporary distances for an (exit) point (x,y) = (width/2,height/2) 
-		// which is located in the center of the maze
-		computeDists(width/2, height/2);
-
-		// find most remote point in maze somewhere on the border
-		int remotex = -1, remotey = -1, remotedist = 0;
-		for (x = 0; x != width; x++) {
-			if (dists[x][0] > remotedist) {
-				remotex = x;
-				remotey = 0;
-				remotedist = dists[x][0];
-			}
-			if (dists[x][height-1] > remotedist) {
-				remotex = x;
-				remotey = height-1;
-				remotedist = dists[x][height-1];
-			}
-		}
-		for (y = 0; y != height; y++) {
-			if (dists[0][y] > remotedist) {
-				remotex = 0;
-				remotey = y;
-				remotedist = dists[0][y];
-			}
-			if (dists[width-1][y] > remotedist) {
-				remotex = width-1;
-				remotey = y;
-				remotedist = dists[width-1][y];
-			}
-		}
-
-		// recompute distances for an exit point (x,y) = (remotex,remotey)
-		computeDists(remotex, remotey);
-
-		// identify cell with the greatest distance
-		setStartPositionToCellWithMaxDistance();
-
-		// make exit position at true exit 
-		setExitPosition(remotex, remotey);
+		// pick the exit on the border and the start position furthest away from it
+		setExitAndStartPosition();
 	}
 
 
@@ -0,0 +1,104 @@
+package com.android.ui;
+
+/**
+ * This class generates a maze with Kruskal's algorithm. All interior walls are visited in random order
+ * and a wall is taken down if the cells on its two sides are not connected yet.
+ *
+ * Walls are kept in an int array, a wall is encoded as cell index times 2 plus 0 for the wall on the right
+ * and 1 for the wall on the bottom of the cell, hence the maze may have at most 2^30 cells.
+ * Connected cells are kept in a disjoint set forest in a single int array with path splitting and union by rank,
+ * a root holds -1-rank instead of a parent. The total cost is O(n alpha(n)) for n cells,
+ * and apart from the two arrays nothing is allocated. Both arrays are reused for the next maze if they are large enough.
+ *
+ * Walls with a bound, i.e. the borders of rooms but for their doors, are never taken down.
+ * Cells that are connected already, like the cells inside a room, start out in the same set.
+ * @author adam
+ *
+ */
+public class MazeBuilderKruskal extends MazeBuilder {
+	private int[] walls; // candidate walls
+	private int[] sets; // parent per cell index, -1-rank for a root
+
+	public MazeBuilderKruskal(){}
+
+	public MazeBuilderKruskal(boolean deterministic){
+		if (deterministic){
+			setSeed(DETERMINISTIC_SEED);
+		}
+	}
+
+	protected void generate() {
+		int n = width*height;
+		if (sets == null || sets.length < n) {
+			sets = new int[n];
+			walls = new int[2*n];
+		}
+		for (int i = 0; i != n; i++)
+			sets[i] = -1;
+		// collect the walls that may be taken down, cells without a wall in between are connected from the start
+		int ct = 0;
+		for (int y = 0; y != height; y++)
+			for (int x = 0; x != width; x++) {
+				int i = x + y*width;
+				cells.setVirginToZero(x, y);
+				for (int dir = 0; dir != 2; dir++) { // right and bottom as in dirsx, dirsy
+					if (cells.hasMaskedBitsTrue(x, y, Cells.masks[dir] << Cells.CW_BOUND_SHIFT))
+						continue; // outer border or border of a room
+					int j = (x + dirsx[dir]) + (y + dirsy[dir])*width;
+					if (cells.hasMaskedBitsTrue(x, y, Cells.masks[dir]))
+						walls[ct++] = (i << 1) | dir;
+					else
+						union(i, j);
+				}
+			}
+		// visit walls in random order
+		for (int k = ct-1; k > 0; k--) {
+			int j = random.nextInt(k+1);
+			int w = walls[k];
+			walls[k] = walls[j];
+			walls[j] = w;
+		}
+		for (int k = 0; k != ct; k++) {
+			int i = walls[k] >>> 1;
+			int dir = walls[k] & 1;
+			int x = i % width;
+			int y = i / width;
+			if (union(i, (x + dirsx[dir]) + (y + dirsy[dir])*width))
+				cells.deleteWall(x, y, dirsx[dir], dirsy[dir]);
+		}
+
+		// pick the exit on the border and the start position furthest away from it
+		setExitAndStartPosition();
+	}
+
+	private int find(int x) {
+		while (sets[x] >= 0) {
+			int p = sets[x];
+			if (sets[p] >= 0)
+				sets[x] = sets[p]; // path splitting: every node on the path is linked to its grandparent
+			x = p;
+		}
+		return x;
+	}
+
+	/**
+	 * Merges the sets of cells a and b
+	 * @return true if they were in different sets
+	 */
+	private boolean union(int a, int b) {
+		a = find(a);
+		b = find(b);
+		if (a == b)
+			return false;
+		// the root with the larger rank, i.e. the smaller value, becomes the parent
+		if (sets[a] > sets[b]) {
+			int t = a;
+			a = b;
+			b = t;
+		}
+		if (sets[a] == sets[b])
+			sets[a]--;
+		sets[b] = a;
+		return true;
+	}
+}
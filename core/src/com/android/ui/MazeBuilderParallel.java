@@ -0,0 +1,286 @@
+package com.android.ui;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * This class generates a maze in parallel. The grid is split into square tiles, each tile is carved independently
+ * by a randomized depth-first search on a fork/join pool, and then the tiles are joined by opening doorways in the
+ * walls between them such that the result is again a perfect maze, like the one of MazeBuilderFalstad.
+ *
+ * Joining works like Kruskal's algorithm on the carved parts: each tile consists of one or more connected parts
+ * (more than one if a room cuts through the tile), the walls on the borders between tiles are visited in random order
+ * and a wall is taken down if it separates two parts that are not connected yet.
+ * Parts are numbered within their tile while it is carved, a tile keeps the part numbers of its cells in a scratch array
+ * of the size of the tile and hands on only those of the cells along its borders with other tiles.
+ * The union-find of the join has an entry per part and visits the border walls only, so besides the cells
+ * the builder takes memory in the order of the number of cells on tile borders, not of the number of cells.
+ *
+ * Each tile gets its own random number generator that is seeded from the random number generator of the builder
+ * before any tile is carved, so the maze only depends on the seed and not on the number of threads or their timing.
+ *
+ * Tiles are a multiple of 64 cells wide and high such that no two tiles share a word or chunk of the cells,
+ * which makes concurrent carving safe for all implementations of Cells.
+ * @author adam
+ *
+ */
+public class MazeBuilderParallel extends MazeBuilder {
+	static final int TILE_ALIGNMENT = 64;
+
+	private final int tileSize;
+	private final int parallelism;
+
+	private int tilesPerRow;
+	private int tileRows;
+	private long[] seeds; // seed per tile
+	private int[] partCounts; // number of parts per tile
+	// parts of the cells on both sides of the borders between tiles, numbered within their tile:
+	// vertical border b lies right of column (b+1)*tileSize-1, cell (x,y) on side 0 (left) or 1 (right) is at (2*b + side)*height + y,
+	// horizontal border b lies below row (b+1)*tileSize-1, cell (x,y) on side 0 (above) or 1 (below) is at (2*b + side)*width + x
+	private int[] vborders;
+	private int[] hborders;
+
+	/**
+	 * Constructor for tiles of 128x128 cells and as many threads as there are processors
+	 */
+	public MazeBuilderParallel() {
+		this(128, Runtime.getRuntime().availableProcessors());
+	}
+
+	/**
+	 * Constructor for a deterministic maze with default settings
+	 */
+	public MazeBuilderParallel(boolean deterministic) {
+		this();
+		if (deterministic){
+			setSeed(DETERMINISTIC_SEED);
+		}
+	}
+
+	/**
+	 * Constructor
+	 * @param tileSize width and height of a tile, rounded up to a multiple of 64
+	 * @param parallelism number of threads that carve tiles
+	 */
+	public MazeBuilderParallel(int tileSize, int parallelism) {
+		this.tileSize = Math.max(1, (tileSize + TILE_ALIGNMENT - 1) / TILE_ALIGNMENT) * TILE_ALIGNMENT;
+		this.parallelism = Math.max(1, parallelism);
+	}
+
+	protected void generate() {
+		tilesPerRow = (width + tileSize - 1) / tileSize;
+		tileRows = (height + tileSize - 1) / tileSize;
+		seeds = new long[tilesPerRow * tileRows];
+		for (int t = 0; t != seeds.length; t++)
+			seeds[t] = random.nextLong();
+		partCounts = new int[seeds.length];
+		vborders = new int[2*(tilesPerRow-1)*height];
+		hborders = new int[2*(tileRows-1)*width];
+
+		ForkJoinPool pool = new ForkJoinPool(parallelism);
+		try {
+			pool.invoke(new CarveTiles(0, seeds.length));
+		} finally {
+			pool.shutdown();
+		}
+		joinTiles();
+		vborders = hborders = null;
+
+		// pick the exit on the border and the start position furthest away from it
+		setExitAndStartPosition();
+	}
+
+	/**
+	 * Carves a range of tiles, splits the range until a single tile is left
+	 */
+	private class CarveTiles extends RecursiveAction {
+		private static final long serialVersionUID = 1L;
+		private final int lo, hi;
+
+		CarveTiles(int lo, int hi) {
+			this.lo = lo;
+			this.hi = hi;
+		}
+
+		@Override
+		protected void compute() {
+			if (hi - lo == 1) {
+				carveTile(lo);
+				return;
+			}
+			int mid = (lo + hi) >>> 1;
+			invokeAll(new CarveTiles(lo, mid), new CarveTiles(mid, hi));
+		}
+	}
+
+	/**
+	 * Carves a tile with a randomized depth-first search that stays within the tile and does not cross bounds.
+	 * Every cell of the tile ends up in a part, parts are spanning trees of the cells they contain.
+	 * Records the number of parts and the parts of the cells along the borders with other tiles.
+	 * @param t tile index
+	 */
+	void carveTile(int t) {
+		int tx = t % tilesPerRow;
+		int ty = t / tilesPerRow;
+		int x0 = tx * tileSize;
+		int y0 = ty * tileSize;
+		int w = Math.min(width, x0 + tileSize) - x0;
+		int h = Math.min(height, y0 + tileSize) - y0;
+		Random r = new Random(seeds[t]);
+		// part per cell index x + y*w relative to the tile
+		int[] parts = new int[w*h];
+		int[] stack = new int[w*h];
+		Arrays.fill(parts, -1);
+		int count = 0;
+		for (int start = 0; start != parts.length; start++) {
+			if (parts[start] >= 0)
+				continue;
+			// start a new part at the cell
+			int part = count++;
+			parts[start] = part;
+			cells.setVirginToZero(x0 + start % w, y0 + start / w);
+			int sp = 0;
+			stack[sp++] = start;
+			while (sp > 0) {
+				int i = stack[sp-1];
+				int x = i % w;
+				int y = i / w;
+				int dir = r.nextInt(4);
+				int n;
+				for (n = 0; n != 4; n++, dir = (dir+1) & 3) {
+					int nx = x + dirsx[dir];
+					int ny = y + dirsy[dir];
+					if (nx < 0 || nx >= w || ny < 0 || ny >= h)
+						continue;
+					if (parts[nx + ny*w] >= 0)
+						continue;
+					if (cells.hasMaskedBitsTrue(x0 + x, y0 + y, Cells.masks[dir] << Cells.CW_BOUND_SHIFT))
+						continue;
+					break;
+				}
+				if (n == 4) {
+					sp--; // dead end, backtrack
+					continue;
+				}
+				int nx = x + dirsx[dir];
+				int ny = y + dirsy[dir];
+				cells.deleteWall(x0 + x, y0 + y, dirsx[dir], dirsy[dir]);
+				cells.setVirginToZero(x0 + nx, y0 + ny);
+				parts[nx + ny*w] = part;
+				stack[sp++] = nx + ny*w;
+			}
+		}
+		partCounts[t] = count;
+		// each tile writes its own entries of the border arrays
+		for (int y = 0; y != h; y++) {
+			if (tx > 0)
+				vborders[(2*(tx-1) + 1)*height + y0 + y] = parts[y*w];
+			if (tx < tilesPerRow-1)
+				vborders[2*tx*height + y0 + y] = parts[w-1 + y*w];
+		}
+		for (int x = 0; x != w; x++) {
+			if (ty > 0)
+				hborders[(2*(ty-1) + 1)*width + x0 + x] = parts[x];
+			if (ty < tileRows-1)
+				hborders[2*ty*width + x0 + x] = parts[x + (h-1)*w];
+		}
+	}
+
+	/**
+	 * Connects the parts of all tiles into a single spanning tree by taking down walls on the borders between tiles.
+	 */
+	void joinTiles() {
+		// union-find over parts, the parts of tile t are numbered from first[t] on
+		int[] first = new int[partCounts.length];
+		int total = 0;
+		for (int t = 0; t != partCounts.length; t++) {
+			first[t] = total;
+			total += partCounts[t];
+		}
+		int[] parent = new int[total];
+		for (int i = 0; i != parent.length; i++)
+			parent[i] = i;
+		// collect the walls on borders between tiles, as cell index times 2 plus 0 for the wall on the right, 1 for the bottom
+		int borders = (tilesPerRow-1)*height + (tileRows-1)*width;
+		long[] walls = new long[borders];
+		int n = 0;
+		for (int tx = 1; tx < tilesPerRow; tx++) {
+			int x = tx*tileSize - 1;
+			for (int y = 0; y != height; y++)
+				n = addBorderWall(walls, n, parent, first, x, y, 0);
+		}
+		for (int ty = 1; ty < tileRows; ty++) {
+			int y = ty*tileSize - 1;
+			for (int x = 0; x != width; x++)
+				n = addBorderWall(walls, n, parent, first, x, y, 1);
+		}
+		// take down walls in random order as long as they separate parts that are not connected yet
+		for (int k = n-1; k > 0; k--) {
+			int j = random.nextInt(k+1);
+			long w = walls[k];
+			walls[k] = walls[j];
+			walls[j] = w;
+		}
+		for (int k = 0; k != n; k++) {
+			long i = walls[k] >>> 1;
+			int dir = (walls[k] & 1) == 0 ? 0 : 1; // right or bottom as in dirsx, dirsy
+			int x = (int) (i % width);
+			int y = (int) (i / width);
+			if (union(parent, part(first, x, y, dir, 0), part(first, x, y, dir, 1)))
+				cells.deleteWall(x, y, dirsx[dir], dirsy[dir]);
+		}
+	}
+
+	/**
+	 * Gives the part of a cell next to the wall in direction dir of cell (x,y), numbered across all tiles
+	 * @param dir 0 for the wall on the right, 1 for the bottom, on a border between tiles
+	 * @param side 0 for cell (x,y), 1 for its neighbor behind the wall
+	 */
+	private int part(int[] first, int x, int y, int dir, int side) {
+		int tx = x / tileSize;
+		int ty = y / tileSize;
+		if (dir == 0)
+			return first[ty*tilesPerRow + tx + side] + vborders[(2*tx + side)*height + y];
+		return first[(ty + side)*tilesPerRow + tx] + hborders[(2*ty + side)*width + x];
+	}
+
+	/**
+	 * Records the wall in direction dir of cell (x,y) as a candidate for a doorway.
+	 * Borders between tiles without a wall, i.e. inside a room, connect the two parts right away.
+	 * Walls with a bound are never taken down.
+	 * @return the new number of candidates
+	 */
+	private int addBorderWall(long[] walls, int n, int[] parent, int[] first, int x, int y, int dir) {
+		if (cells.hasMaskedBitsTrue(x, y, Cells.masks[dir] << Cells.CW_BOUND_SHIFT))
+			return n;
+		if (cells.hasMaskedBitsFalse(x, y, Cells.masks[dir])) {
+			union(parent, part(first, x, y, dir, 0), part(first, x, y, dir, 1));
+			return n;
+		}
+		walls[n] = ((x + (long) y*width) << 1) | dir;
+		return n+1;
+	}
+
+	private static int find(int[] parent, int x) {
+		while (parent[x] != x) {
+			parent[x] = parent[parent[x]];
+			x = parent[x];
+		}
+		return x;
+	}
+
+	/**
+	 * Merges the sets of a and b
+	 * @return true if they were different sets
+	 */
+	private static boolean union(int[] parent, int a, int b) {
+		a = find(parent, a);
+		b = find(parent, b);
+		if (a == b)
+			return false;
+		parent[b] = a;
+		return true;
+	}
+}
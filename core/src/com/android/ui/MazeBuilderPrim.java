@@ -0,0 +1,90 @@
+package com.android.ui;
+
+/**
+ * This class generates a maze using Prim's algorithm.
+ *
+ * The frontier is kept in an int array of cell indices x + y*width. A random entry is removed
+ * by moving the last entry into its place, so each step takes constant time and
+ * the whole generation is linear in the number of cells. No objects are allocated during generation.
+ * @author adam
+ *
+ */
+public class MazeBuilderPrim extends MazeBuilder {
+	// status of a cell in cellStatus
+	static final byte UNVISITED = 0;
+	static final byte FRONTIER = 1;
+	static final byte IN_MAZE = 2;
+
+	byte[] cellStatus; // status per cell index x + y*width
+	private final int[] neighbors = new int[4]; // directions of neighbors that are already in the maze
+
+
+	protected void generate() {
+		// Generate the maze using Prim's algorithm
+		int x = randNo(0, width -1); //starting x value
+		int y = 0;
+		cellStatus = new byte[width*height];
+		int[] frontier = new int[width*height];  //sufficient array size, each cell enters the frontier once
+		int frontierSize = 0;
+		cells.setVirginToZero(x, y);
+		while(true){
+			cellStatus[x + y*width] = IN_MAZE;
+			for(int ii = 0; ii < 4; ii++){
+				int dx = dirsx[ii];
+				int dy = dirsy[ii];
+				// canGo fails for cells in the maze as they are no longer virgin
+				if(cells.canGo(x, y, dx, dy)){
+					int i = (x+dx) + (y+dy)*width;
+					if(cellStatus[i] != FRONTIER){
+						cellStatus[i] = FRONTIER;
+						frontier[frontierSize++] = i;
+					}
+				}
+			}
+
+			if(frontierSize == 0){
+				break; //end of loop. Maze complete
+			}
+			// remove a random square from the frontier, the last one takes its place
+			int nextSquare = randNo(0,frontierSize -1);
+			int next = frontier[nextSquare];
+			frontier[nextSquare] = frontier[--frontierSize];
+			x = next % width;
+			y = next / width;
+
+			int neighborDirection = findFinishedNeighbor(x, y);
+			cells.deleteWall(x, y, dirsx[neighborDirection], dirsy[neighborDirection]);
+			cells.setVirginToZero(x, y);
+		}
+
+		// pick the exit on the border and the start position furthest away from it
+		setExitAndStartPosition();
+	}
+
+
+	/**
+	 * Picks a random neighbor of (x,y) that is already in the maze and not separated from (x,y) by a bound.
+	 * @return direction of the neighbor as an index into dirsx, dirsy
+	 */
+	protected int findFinishedNeighbor(int x, int y){
+		int neighborCount = 0;
+		for (int ii = 0; ii < 4; ii++){
+			int dx = dirsx[ii];
+			int dy = dirsy[ii];
+			if (x+dx >-1 && (x+dx) < width && (y+ dy) >-1 && (y+dy) < height){ //check if it's still inside
+																			   //the maze walls.
+				if(cellStatus[(x+dx) + (y+dy)*width] == IN_MAZE &&
+						cells.hasMaskedBitsFalse(x, y, Cells.masks[ii] << Cells.CW_BOUND_SHIFT)){
+					neighbors[neighborCount++] = ii;
+				}
+			}
+		}
+		if (neighborCount == 0){
+			System.out.println("Can't find a valid neighbor square");
+			return 0;
+		}
+		return neighbors[randNo(0, neighborCount-1)];  //this returns a random neighbor of the valid
+												// neighbors already in the maze.
+	}
+
+}
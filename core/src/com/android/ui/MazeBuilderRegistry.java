@@ -0,0 +1,296 @@
+package com.android.ui;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Keeps the available maze generation algorithms and picks one for a requested maze.
+ *
+ * Each builder is registered with a cost profile, a fixed cost per build plus a cost per cell,
+ * and the information whether it supports rooms. The selection takes the builder with the lowest
+ * predicted cost among those that support the requested number of rooms. A builder can be forced by name instead.
+ * The cost covers the phases that depend on the algorithm, i.e. placing rooms and generate() including the
+ * computation of exit and distances. The BSP construction is recorded but not part of the cost as it
+ * depends on the wall segments of the result rather than on the algorithm.
+ *
+ * A builder obtained from the registry reports the time of each phase of its run() back to the registry,
+ * builds ahead of time with MazeBuilder.buildResult() do not as they run at a low priority.
+ * The registry keeps the totals per builder and phase together with the total cost its profile predicted for these builds.
+ * Once a builder has MIN_SAMPLES recorded builds its prediction is the profile scaled by its own ratio of measured to
+ * predicted cost. A builder with fewer builds is scaled by the ratio over all recorded builds, the device factor,
+ * so a builder that has not been measured on this device is neither favored nor penalized because other builders have been.
+ * The ratios are taken over all builds rather than the last one, a single slow build does not change the selection.
+ *
+ * The initial profiles of the default registry stem from measurements of builds for skill levels 5 to 15 on a desktop JVM.
+ * The parallel builders pay for starting a thread pool with each build. They use ForkJoinPool,
+ * which Android only has from API level 21 on, and are registered only if the platform provides it.
+ * @author adam
+ *
+ */
+public class MazeBuilderRegistry {
+	/**
+	 * Creates a new builder for each maze
+	 */
+	public interface Factory {
+		MazeBuilder newBuilder();
+	}
+
+	static final int MIN_SAMPLES = 3; // recorded builds before a builder's prediction follows its own measurements
+
+	/**
+	 * A registered builder with its cost profile and recorded times
+	 */
+	private static class Entry {
+		final String name;
+		final Factory factory;
+		final boolean rooms;
+		final double fixedNanos;
+		final double nanosPerCell;
+		long builds;
+		final long[] phaseNanos = new long[MazeBuilder.PHASES];
+		double predictedNanos; // total cost the profile predicted for the recorded builds
+
+		Entry(String name, Factory factory, boolean rooms, double fixedNanos, double nanosPerCell) {
+			this.name = name;
+			this.factory = factory;
+			this.rooms = rooms;
+			this.fixedNanos = fixedNanos;
+			this.nanosPerCell = nanosPerCell;
+		}
+
+		/**
+		 * Gives the cost the profile predicts for a maze of the given number of cells
+		 */
+		double profile(long cells) {
+			return fixedNanos + nanosPerCell * cells;
+		}
+
+		/**
+		 * Gives the total measured cost of the recorded builds
+		 */
+		long costNanos() {
+			return phaseNanos[MazeBuilder.PHASE_ROOMS] + phaseNanos[MazeBuilder.PHASE_GENERATE];
+		}
+	}
+
+	private static MazeBuilderRegistry defaultRegistry;
+
+	private final Map<String, Entry> entries = new LinkedHashMap<String, Entry>();
+	private String forced; // name of the builder to use regardless of cost, null for automatic selection
+	private long costNanos; // total measured cost of all recorded builds
+	private double predictedNanos; // total cost the profiles predicted for all recorded builds
+
+	/**
+	 * Tells if the platform provides ForkJoinPool, which the parallel builders need
+	 */
+	static boolean hasForkJoin() {
+		try {
+			Class.forName("java.util.concurrent.ForkJoinPool");
+			return true;
+		} catch (ClassNotFoundException e) {
+			return false;
+		}
+	}
+
+	/**
+	 * Gives the registry with all builders of this package
+	 */
+	public static synchronized MazeBuilderRegistry getDefault() {
+		if (defaultRegistry == null) {
+			MazeBuilderRegistry r = new MazeBuilderRegistry();
+			r.register("falstad", new Factory() {
+				@Override
+				public MazeBuilder newBuilder() {
+					return new MazeBuilderFalstad();
+				}
+			}, true, 0, 3200);
+			r.register("prim", new Factory() {
+				@Override
+				public MazeBuilder newBuilder() {
+					return new MazeBuilderPrim();
+				}
+			}, true, 0, 6700);
+			r.register("kruskal", new Factory() {
+				@Override
+				public MazeBuilder newBuilder() {
+					return new MazeBuilderKruskal();
+				}
+			}, true, 0, 4000);
+			if (hasForkJoin()) {
+				r.register("division", new Factory() {
+					@Override
+					public MazeBuilder newBuilder() {
+						return new MazeBuilderDivision();
+					}
+				}, true, 500000, 5200);
+				r.register("parallel", new Factory() {
+					@Override
+					public MazeBuilder newBuilder() {
+						return new MazeBuilderParallel();
+					}
+				}, true, 5000000, 2600);
+			}
+			r.register("eller", new Factory() {
+				@Override
+				public MazeBuilder newBuilder() {
+					return new MazeBuilderEller();
+				}
+			}, false, 0, 7800);
+			defaultRegistry = r;
+		}
+		return defaultRegistry;
+	}
+
+	/**
+	 * Adds a builder, replaces a builder of the same name
+	 * @param name of the builder
+	 * @param factory creates builders
+	 * @param rooms true if the builder supports rooms
+	 * @param fixedNanos predicted time per build independent of the size
+	 * @param nanosPerCell predicted time per cell of the maze
+	 */
+	public synchronized void register(String name, Factory factory, boolean rooms, double fixedNanos, double nanosPerCell) {
+		entries.put(name, new Entry(name, factory, rooms, fixedNanos, nanosPerCell));
+	}
+
+	/**
+	 * Gives the names of all registered builders in the order of registration
+	 */
+	public synchronized List<String> getNames() {
+		return new ArrayList<String>(entries.keySet());
+	}
+
+	/**
+	 * Forces the use of a builder for all subsequent mazes
+	 * @param name of a registered builder, null to return to automatic selection
+	 */
+	public synchronized void force(String name) {
+		if (name != null && !entries.containsKey(name))
+			throw new IllegalArgumentException("unknown builder " + name);
+		forced = name;
+	}
+
+	/**
+	 * Selects the builder for a maze
+	 * @param w width
+	 * @param h height
+	 * @param roomct number of rooms
+	 * @return name of the forced builder, otherwise the builder with the lowest predicted cost
+	 */
+	public synchronized String select(int w, int h, int roomct) {
+		if (forced != null)
+			return forced;
+		long n = (long) w * h;
+		Entry best = null;
+		for (Entry e : entries.values()) {
+			if (roomct > 0 && !e.rooms)
+				continue;
+			if (best == null || predict(e, n) < predict(best, n))
+				best = e;
+		}
+		if (best == null)
+			throw new IllegalStateException("no builder for " + roomct + " rooms");
+		return best.name;
+	}
+
+	/**
+	 * Creates the selected builder for a maze
+	 * @param w width
+	 * @param h height
+	 * @param roomct number of rooms
+	 * @return new builder that reports its phase times to this registry
+	 */
+	public MazeBuilder newBuilder(int w, int h, int roomct) {
+		return newBuilder(select(w, h, roomct));
+	}
+
+	/**
+	 * Creates a builder by name
+	 * @param name of a registered builder
+	 * @return new builder that reports its phase times to this registry
+	 */
+	public MazeBuilder newBuilder(String name) {
+		Entry e;
+		synchronized (this) {
+			e = entries.get(name);
+		}
+		if (e == null)
+			throw new IllegalArgumentException("unknown builder " + name);
+		MazeBuilder mb = e.factory.newBuilder();
+		mb.registry = this;
+		mb.registryName = name;
+		return mb;
+	}
+
+	/**
+	 * Records the phase times of a build, called at the end of a build that fills a maze
+	 */
+	synchronized void record(String name, int w, int h, long[] phaseNanos) {
+		Entry e = entries.get(name);
+		if (e == null)
+			return;
+		for (int p = 0; p != MazeBuilder.PHASES; p++)
+			e.phaseNanos[p] += phaseNanos[p];
+		e.builds++;
+		double predicted = e.profile((long) w * h);
+		e.predictedNanos += predicted;
+		costNanos += phaseNanos[MazeBuilder.PHASE_ROOMS] + phaseNanos[MazeBuilder.PHASE_GENERATE];
+		predictedNanos += predicted;
+		MazeLog.v("MazeBuilderRegistry", name + " " + w + "x" + h + " rooms " + phaseNanos[MazeBuilder.PHASE_ROOMS]
+				+ " generate " + phaseNanos[MazeBuilder.PHASE_GENERATE] + " segments " + phaseNanos[MazeBuilder.PHASE_SEGMENTS]
+				+ " nodes " + phaseNanos[MazeBuilder.PHASE_NODES] + " ns");
+	}
+
+	/**
+	 * Gives the ratio of measured to predicted cost of a builder, its own once it has enough recorded builds
+	 * and the device factor before
+	 */
+	private double factor(Entry e) {
+		if (e.builds >= MIN_SAMPLES && e.predictedNanos > 0)
+			return e.costNanos() / e.predictedNanos;
+		return getDeviceFactor();
+	}
+
+	/**
+	 * Gives the predicted cost of a builder for a maze of the given number of cells
+	 */
+	private double predict(Entry e, long cells) {
+		return factor(e) * e.profile(cells);
+	}
+
+	/**
+	 * Gives the number of recorded builds of a builder
+	 */
+	public synchronized long getBuildCount(String name) {
+		Entry e = entries.get(name);
+		return (e == null) ? 0 : e.builds;
+	}
+
+	/**
+	 * Gives the total time of all recorded builds of a builder in a phase
+	 * @param name of the builder
+	 * @param phase one of MazeBuilder.PHASE_ROOMS, PHASE_GENERATE, PHASE_SEGMENTS, PHASE_NODES
+	 * @return time in nanoseconds
+	 */
+	public synchronized long getPhaseNanos(String name, int phase) {
+		Entry e = entries.get(name);
+		return (e == null) ? 0 : e.phaseNanos[phase];
+	}
+
+	/**
+	 * Gives the current predicted cost per cell of a builder, its profile scaled by its measurements or the device factor
+	 */
+	public synchronized double getNanosPerCell(String name) {
+		Entry e = entries.get(name);
+		return (e == null) ? 0 : factor(e) * e.nanosPerCell;
+	}
+
+	/**
+	 * Gives the measured cost of all recorded builds on this device relative to the profiles, 1 until a build has been recorded
+	 */
+	public synchronized double getDeviceFactor() {
+		return (predictedNanos > 0) ? costNanos / predictedNanos : 1;
+	}
+}
@@ -0,0 +1,168 @@
+package com.android.ui;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Keeps the results of seeded maze builds such that building the same maze again takes a copy instead of a new build.
+ *
+ * A result is identified by the builder, the width, the height, the number of rooms and the seed of the random number generator
+ * at the start of the build. Only builds that start from a fresh seed, see MazeBuilder.setSeed(), can be identified that way
+ * and are cached. A builder uses a cache that is set with MazeBuilder.setCache().
+ *
+ * The cache holds results up to a budget of bytes, estimated from the size of the cells, the distances and the BSP tree.
+ * If the budget is exceeded, the least recently used results are evicted. A result larger than the budget is not cached.
+ * Results are handed out as copies with cells, distances and BSP tree of their own, see MazeResult.copy().
+ * @author adam
+ *
+ */
+public class MazeCache {
+	private static final int BYTES_PER_CELL = 2 + 4; // a short in Cells and an int in dists
+	private static final int BYTES_PER_SEGMENT = 48; // Seg object and its entry in a leaf
+	private static final int BYTES_PER_COLUMN = 16; // array header of a column of dists
+
+	/**
+	 * Identifies the result of a build
+	 */
+	private static final class Key {
+		final String builder;
+		final int width, height, rooms;
+		final long seed;
+
+		Key(String builder, int width, int height, int rooms, long seed) {
+			this.builder = builder;
+			this.width = width;
+			this.height = height;
+			this.rooms = rooms;
+			this.seed = seed;
+		}
+
+		@Override
+		public boolean equals(Object o) {
+			if (!(o instanceof Key))
+				return false;
+			Key k = (Key) o;
+			return builder.equals(k.builder) && width == k.width && height == k.height && rooms == k.rooms && seed == k.seed;
+		}
+
+		@Override
+		public int hashCode() {
+			int h = builder.hashCode();
+			h = 31*h + width;
+			h = 31*h + height;
+			h = 31*h + rooms;
+			return 31*h + (int) (seed ^ (seed >>> 32));
+		}
+	}
+
+	private static final class Entry {
+		final MazeResult result;
+		final long bytes;
+
+		Entry(MazeResult result, long bytes) {
+			this.result = result;
+			this.bytes = bytes;
+		}
+	}
+
+	private final long budget;
+	private final LinkedHashMap<Key, Entry> entries = new LinkedHashMap<Key, Entry>(16, 0.75f, true); // in access order
+	private long bytes; // estimated size of all entries
+	private long hits, misses, evictions;
+
+	/**
+	 * Constructor
+	 * @param budget maximum estimated size of all cached results in bytes
+	 */
+	public MazeCache(long budget) {
+		this.budget = budget;
+	}
+
+	/**
+	 * Gives a cached result
+	 * @param builder name of the builder, see MazeBuilder.getCacheName()
+	 * @param w width
+	 * @param h height
+	 * @param rooms number of requested rooms
+	 * @param seed seed at the start of the build
+	 * @return the cached result, null if there is none, must be copied before it is delivered to a maze
+	 */
+	public synchronized MazeResult get(String builder, int w, int h, int rooms, long seed) {
+		Entry e = entries.get(new Key(builder, w, h, rooms, seed));
+		if (e == null) {
+			misses++;
+			return null;
+		}
+		hits++;
+		return e.result;
+	}
+
+	/**
+	 * Adds a result, evicts the least recently used results if the budget is exceeded
+	 * @param builder name of the builder, see MazeBuilder.getCacheName()
+	 * @param w width
+	 * @param h height
+	 * @param rooms number of requested rooms
+	 * @param seed seed at the start of the build
+	 * @param r the result, must not be delivered to a maze afterwards
+	 */
+	public synchronized void put(String builder, int w, int h, int rooms, long seed, MazeResult r) {
+		long size = estimateBytes(r);
+		if (size > budget)
+			return;
+		Entry old = entries.put(new Key(builder, w, h, rooms, seed), new Entry(r, size));
+		if (old != null)
+			bytes -= old.bytes;
+		bytes += size;
+		Iterator<Map.Entry<Key, Entry>> it = entries.entrySet().iterator();
+		while (bytes > budget && it.hasNext()) {
+			bytes -= it.next().getValue().bytes;
+			it.remove();
+			evictions++;
+		}
+	}
+
+	/**
+	 * Estimates the memory held by a result
+	 */
+	static long estimateBytes(MazeResult r) {
+		return (long) r.width * r.height * BYTES_PER_CELL + (long) r.width * BYTES_PER_COLUMN
+				+ (long) r.countSegments() * BYTES_PER_SEGMENT;
+	}
+
+	/**
+	 * Removes all results, the counters are kept
+	 */
+	public synchronized void clear() {
+		entries.clear();
+		bytes = 0;
+	}
+
+	public synchronized int size() {
+		return entries.size();
+	}
+
+	/**
+	 * Gives the estimated size of all cached results in bytes
+	 */
+	public synchronized long getBytes() {
+		return bytes;
+	}
+
+	public long getBudget() {
+		return budget;
+	}
+
+	public synchronized long getHits() {
+		return hits;
+	}
+
+	public synchronized long getMisses() {
+		return misses;
+	}
+
+	public synchronized long getEvictions() {
+		return evictions;
+	}
+}
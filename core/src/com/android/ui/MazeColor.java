@@ -0,0 +1,28 @@
+package com.android.ui;
+
+/**
+ * Colors used by the drawers, encoded as 32 bit ARGB integers.
+ * The encoding is identical to android.graphics.Color such that values can be handed
+ * to an Android Paint directly, while the core does not depend on the Android SDK.
+ * @author adam
+ *
+ */
+public class MazeColor {
+	public static final int BLACK  = 0xFF000000;
+	public static final int DKGRAY = 0xFF444444;
+	public static final int GRAY   = 0xFF888888;
+	public static final int WHITE  = 0xFFFFFFFF;
+	public static final int RED    = 0xFFFF0000;
+	public static final int YELLOW = 0xFFFFFF00;
+
+	/**
+	 * Encodes an opaque color from its red, green, blue components
+	 * @param red in [0,255]
+	 * @param green in [0,255]
+	 * @param blue in [0,255]
+	 * @return ARGB encoding of the color
+	 */
+	public static int rgb(int red, int green, int blue) {
+		return 0xFF000000 | (red << 16) | (green << 8) | blue;
+	}
+}
@@ -0,0 +1,360 @@
+package com.android.ui;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayDeque;
+import java.util.Vector;
+
+/**
+ * Saves a generated maze to a file and loads it again without any generation work.
+ *
+ * File layout, all values little endian, sections start at multiples of 8:
+ * <pre>
+ * header (72 bytes): int magic, int version, int width, int height, int startx, int starty, int exitx, int exity,
+ *                    long cells offset, long solution offset, long bsp offset, int number of nodes, int number of segments,
+ *                    int flags, where bit 0 tells if the solution has the upper bytes of the distances, int 0
+ * cells:    width*height shorts in row-major order, the encoding of Cells including bounds and the InRoom flags of rooms
+ * solution: the arrays of SolutionField: (width*height + 31)/32 longs with the directions, width*height chars with the
+ *           lower 16 bits of the distances and, if the flag is set, width*height bytes with the upper 8 bits
+ * bsp:      the nodes of the BSP tree in preorder, a branch is int 0, x, y, dx, dy followed by its left and right subtree,
+ *           a leaf is int 1, number of segments, followed by 7 ints per segment: x, y, dx, dy, dist, col, flags
+ *           where bit 0 of flags is the partition bit
+ * </pre>
+ * The cells section has the layout of MappedCells, so a loaded maze keeps its cells in the mapped file
+ * and the operating system pages them in on demand instead of reading them when the file is loaded.
+ * The mapping is private, changes to the cells of a loaded maze are not written back to the file.
+ * The cells of a maze from a file that is not writable, e.g. an asset, are mapped read only and cannot be changed.
+ * The solution is copied into the arrays of a SolutionField, about 2.25 bytes per cell, and the BSP tree is rebuilt
+ * from its records. Loading thus still takes time proportional to the size of the grid, but it copies memory
+ * and neither generates the maze nor computes distances or derives directions.
+ *
+ * A file is checked against its own header before anything is built from it, a truncated or corrupt file
+ * gives an IOException rather than a runtime exception or an allocation of the size of a corrupt count.
+ * @author adam
+ *
+ */
+public class MazeFile {
+	static final int MAGIC = 0x414d5a31; // "AMZ1"
+	static final int VERSION = 2;
+	static final int HEADER_SIZE = 72;
+	private static final int BRANCH = 0;
+	private static final int LEAF = 1;
+	private static final int SEG_INTS = 7;
+	private static final int FLAG_PARTITION = 1;
+	private static final int FLAG_HIGH = 1; // header flag for the upper bytes of the distances
+	private static final int BUFFER_SIZE = 1 << 16;
+
+	/**
+	 * Writes a maze to a file, an existing file is overwritten
+	 * @param file to write
+	 * @param r the maze
+	 * @throws IOException if the file cannot be written
+	 */
+	public static void write(File file, MazeResult r) throws IOException {
+		int w = r.width;
+		int h = r.height;
+		long n = (long) w * h;
+		SolutionField sf = r.solution;
+		long cellsOffset = HEADER_SIZE;
+		long solutionOffset = align(cellsOffset + 2*n);
+		long bspOffset = align(solutionOffset + solutionSize(n, sf.high != null));
+		// find the exit, it is the cell with distance 1
+		int exitx = -1, exity = -1;
+		for (int x = 0; x != w && exitx < 0; x++)
+			for (int y = 0; y != h; y++)
+				if (sf.isExit(x, y)) {
+					exitx = x;
+					exity = y;
+					break;
+				}
+		RandomAccessFile raf = new RandomAccessFile(file, "rw");
+		try {
+			raf.setLength(0);
+			Output out = new Output(raf.getChannel());
+			// header is written last when the size of the tree is known
+			out.skip(cellsOffset);
+			int[] row = new int[w];
+			for (int y = 0; y != h; y++) {
+				r.cells.getRow(y, row);
+				for (int x = 0; x != w; x++)
+					out.putShort((short) row[x]);
+			}
+			out.skip(solutionOffset);
+			for (long v : sf.dirs)
+				out.putLong(v);
+			for (char v : sf.dist)
+				out.putShort((short) v);
+			if (sf.high != null) {
+				out.skip(align(solutionOffset + 8L*sf.dirs.length + 2*n));
+				for (byte v : sf.high)
+					out.putByte(v);
+			}
+			out.skip(bspOffset);
+			int nodes = 0, segments = 0;
+			ArrayDeque<BSPNode> stack = new ArrayDeque<BSPNode>();
+			stack.push(r.root);
+			while (!stack.isEmpty()) {
+				BSPNode node = stack.pop();
+				nodes++;
+				if (node.isleaf) {
+					Vector<Seg> sl = ((BSPLeaf) node).slist;
+					out.putInt(LEAF);
+					out.putInt(sl.size());
+					for (int i = 0; i != sl.size(); i++) {
+						Seg se = sl.elementAt(i);
+						out.putInt(se.x);
+						out.putInt(se.y);
+						out.putInt(se.dx);
+						out.putInt(se.dy);
+						out.putInt(se.dist);
+						out.putInt(se.col);
+						out.putInt(se.partition ? FLAG_PARTITION : 0);
+					}
+					segments += sl.size();
+				} else {
+					BSPBranch b = (BSPBranch) node;
+					out.putInt(BRANCH);
+					out.putInt(b.x);
+					out.putInt(b.y);
+					out.putInt(b.dx);
+					out.putInt(b.dy);
+					// preorder: left subtree first
+					stack.push(b.rbranch);
+					stack.push(b.lbranch);
+				}
+			}
+			out.flush();
+			ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+			header.putInt(MAGIC).putInt(VERSION).putInt(w).putInt(h);
+			header.putInt(r.startx).putInt(r.starty).putInt(exitx).putInt(exity);
+			header.putLong(cellsOffset).putLong(solutionOffset).putLong(bspOffset);
+			header.putInt(nodes).putInt(segments);
+			header.putInt((sf.high != null) ? FLAG_HIGH : 0).putInt(0);
+			header.flip();
+			raf.getChannel().write(header, 0);
+		} finally {
+			raf.close();
+		}
+	}
+
+	/**
+	 * Loads a maze from a file written by write()
+	 * @param file to read
+	 * @return the maze, its cells are mapped from the file
+	 * @throws IOException if the file cannot be read or has an unknown format
+	 */
+	public static MazeResult read(File file) throws IOException {
+		// a private mapping needs a channel that is open for writing even though nothing is written
+		boolean writable = file.canWrite();
+		RandomAccessFile raf = new RandomAccessFile(file, writable ? "rw" : "r");
+		try {
+			FileChannel channel = raf.getChannel();
+			long size = channel.size();
+			ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+			if (size < HEADER_SIZE || channel.read(header, 0) != HEADER_SIZE)
+				throw new IOException(file + " is not a maze file");
+			header.flip();
+			if (header.getInt() != MAGIC)
+				throw new IOException(file + " is not a maze file");
+			int version = header.getInt();
+			if (version != VERSION)
+				throw new IOException(file + " has unsupported version " + version);
+			int w = header.getInt();
+			int h = header.getInt();
+			int startx = header.getInt();
+			int starty = header.getInt();
+			header.getInt(); // exit x, implied by the solution
+			header.getInt(); // exit y
+			long cellsOffset = header.getLong();
+			long solutionOffset = header.getLong();
+			long bspOffset = header.getLong();
+			int nodes = header.getInt();
+			int segments = header.getInt();
+			boolean hasHigh = (header.getInt() & FLAG_HIGH) != 0;
+			long n = (long) w * h;
+			// a buffer and an array hold at most 2^31 - 1 elements, the cells take 2 bytes each
+			if (w <= 0 || h <= 0 || 2*n > Integer.MAX_VALUE)
+				throw new IOException(file + " has an invalid size " + w + "x" + h);
+			if (startx < 0 || startx >= w || starty < 0 || starty >= h || nodes <= 0 || segments < 0
+					|| cellsOffset < HEADER_SIZE || cellsOffset + 2*n > solutionOffset
+					|| solutionOffset + solutionSize(n, hasHigh) > bspOffset
+					|| bspOffset + 4L*(2*(long) nodes + SEG_INTS*(long) segments) > size)
+				throw new IOException(file + " is truncated or corrupt");
+
+			// a private mapping is copy on write, the maze may change its cells without touching the file
+			MappedByteBuffer cellmap = channel.map(writable ? FileChannel.MapMode.PRIVATE : FileChannel.MapMode.READ_ONLY, cellsOffset, 2*n);
+			Cells cells = new MappedCells(cellmap, w, h);
+
+			ByteBuffer solbuf = channel.map(FileChannel.MapMode.READ_ONLY, solutionOffset, solutionSize(n, hasHigh))
+					.order(ByteOrder.LITTLE_ENDIAN);
+			long[] dirs = new long[(int) ((n + 31) >>> 5)];
+			char[] dist = new char[(int) n];
+			solbuf.asLongBuffer().get(dirs);
+			solbuf.position(8*dirs.length);
+			solbuf.asCharBuffer().get(dist);
+			byte[] high = null;
+			if (hasHigh) {
+				high = new byte[(int) n];
+				solbuf.position((int) align(8L*dirs.length + 2*n));
+				solbuf.get(high);
+			}
+			SolutionField solution = new SolutionField(w, h, dirs, dist, high);
+
+			IntBuffer bspbuf = channel.map(FileChannel.MapMode.READ_ONLY, bspOffset, size - bspOffset)
+					.order(ByteOrder.LITTLE_ENDIAN).asIntBuffer();
+			BSPNode root = readTree(bspbuf, nodes, segments);
+			return new MazeResult(root, cells, solution, startx, starty, w, h);
+		} catch (BufferUnderflowException e) {
+			throw new IOException(file + " is truncated or corrupt");
+		} finally {
+			// the mappings stay valid after the file is closed
+			raf.close();
+		}
+	}
+
+	/**
+	 * Loads a maze from a file and makes it the current maze, which is ready to play afterwards
+	 * @param file written by write()
+	 * @param m maze to be filled
+	 * @throws IOException if the file cannot be read or has an unknown format
+	 */
+	public static void load(File file, Maze m) throws IOException {
+		read(file).deliver(m);
+	}
+
+	/**
+	 * Reads the BSP tree and checks it against the numbers of nodes and segments of the header.
+	 * The records are scanned first to find where each node starts, then the tree is built from the last record
+	 * to the first: in reversed preorder both subtrees of a branch are complete when the branch is reached,
+	 * the left one on top of the stack. Unlike MazeBuilder.genNodes() this takes no recursion,
+	 * a corrupt file cannot overflow the call stack with a deep chain of branches.
+	 */
+	private static BSPNode readTree(IntBuffer in, int nodes, int segments) throws IOException {
+		int[] start = new int[nodes]; // nodes is bounded by the size of the file
+		int remaining = segments;
+		for (int k = 0; k != nodes; k++) {
+			start[k] = in.position();
+			if (in.remaining() < 2)
+				throw new IOException("BSP tree is truncated");
+			int type = in.get();
+			if (type == LEAF) {
+				int ct = in.get();
+				if (ct < 0 || ct > remaining || (long) SEG_INTS*ct > in.remaining())
+					throw new IOException("leaf with " + ct + " segments, " + remaining + " left");
+				remaining -= ct;
+				in.position(in.position() + SEG_INTS*ct);
+			} else if (type == BRANCH) {
+				if (in.remaining() < 4)
+					throw new IOException("BSP tree is truncated");
+				in.position(in.position() + 4);
+			} else
+				throw new IOException("unknown node type " + type);
+		}
+		if (remaining != 0)
+			throw new IOException("BSP tree has " + (segments - remaining) + " segments, header says " + segments);
+		ArrayDeque<BSPNode> stack = new ArrayDeque<BSPNode>();
+		for (int k = nodes - 1; k >= 0; k--) {
+			in.position(start[k]);
+			if (in.get() == LEAF) {
+				int ct = in.get();
+				Vector<Seg> sl = new Vector<Seg>(ct);
+				for (int i = 0; i != ct; i++) {
+					Seg se = new Seg(in.get(), in.get(), in.get(), in.get(), 0, 0);
+					// dist and col are stored as computed by the constructor at generation time
+					se.dist = in.get();
+					se.col = in.get();
+					se.partition = (in.get() & FLAG_PARTITION) != 0;
+					sl.addElement(se);
+				}
+				stack.push(new BSPLeaf(sl));
+			} else {
+				if (stack.size() < 2)
+					throw new IOException("branch without two subtrees");
+				int x = in.get();
+				int y = in.get();
+				int dx = in.get();
+				int dy = in.get();
+				BSPNode l = stack.pop();
+				BSPNode r = stack.pop();
+				stack.push(new BSPBranch(x, y, dx, dy, l, r));
+			}
+		}
+		if (stack.size() != 1)
+			throw new IOException("BSP tree has " + stack.size() + " roots");
+		return stack.pop();
+	}
+
+	/**
+	 * Gives the number of bytes of the solution section
+	 */
+	private static long solutionSize(long n, boolean hasHigh) {
+		long size = 8*((n + 31) >>> 5) + 2*n;
+		return hasHigh ? align(size) + n : size;
+	}
+
+	private static long align(long offset) {
+		return (offset + 7) & ~7L;
+	}
+
+	/**
+	 * Buffered little endian output to a channel
+	 */
+	private static class Output {
+		private final FileChannel channel;
+		private final ByteBuffer buf = ByteBuffer.allocateDirect(BUFFER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+		private long position; // file position of the start of buf
+
+		Output(FileChannel channel) {
+			this.channel = channel;
+		}
+
+		void putShort(short v) throws IOException {
+			if (buf.remaining() < 2)
+				flush();
+			buf.putShort(v);
+		}
+
+		void putInt(int v) throws IOException {
+			if (buf.remaining() < 4)
+				flush();
+			buf.putInt(v);
+		}
+
+		void putLong(long v) throws IOException {
+			if (buf.remaining() < 8)
+				flush();
+			buf.putLong(v);
+		}
+
+		void putByte(byte v) throws IOException {
+			if (!buf.hasRemaining())
+				flush();
+			buf.put(v);
+		}
+
+		/**
+		 * Moves forward to the given file position, the bytes in between are zero
+		 */
+		void skip(long offset) throws IOException {
+			while (position + buf.position() < offset) {
+				if (!buf.hasRemaining())
+					flush();
+				buf.put((byte) 0);
+			}
+		}
+
+		void flush() throws IOException {
+			buf.flip();
+			while (buf.hasRemaining())
+				position += channel.write(buf, position);
+			buf.clear();
+		}
+	}
+}
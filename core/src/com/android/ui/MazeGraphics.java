@@ -0,0 +1,20 @@
+package com.android.ui;
+
+/**
+ * Drawing operations the FirstPersonDrawer and the MapDrawer need to render a maze.
+ * The Android application implements it with a canvas in the GraphicsWrapper, 
+ * a headless client may count or discard drawing calls.
+ * Colors are ARGB integers as defined in MazeColor.
+ * @author adam
+ *
+ */
+public interface MazeGraphics {
+
+	void setColor(int color);
+
+	void fillPolygon(int[] xps, int[] yps, int n);
+
+	void drawLine(int x1, int y1, int x2, int y2);
+
+	void fillOval(int x, int y, int width, int height);
+}
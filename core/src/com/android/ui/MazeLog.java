@@ -0,0 +1,46 @@
+package com.android.ui;
+
+/**
+ * Logging facade for the maze core. The core classes do not depend on android.util.Log
+ * such that they can be used on a plain JVM, e.g. for batch generation or benchmarks.
+ * The Android application installs a logger that forwards to android.util.Log,
+ * the default logger discards all messages.
+ * @author adam
+ *
+ */
+public class MazeLog {
+
+	/**
+	 * Receives log messages from the maze core.
+	 */
+	public interface Logger {
+		void v(String tag, String msg);
+	}
+
+	private static volatile Logger logger = new Logger() {
+		@Override
+		public void v(String tag, String msg) {
+		}
+	};
+
+	/**
+	 * Installs the logger that receives all subsequent messages.
+	 * @param l logger to use, must not be null
+	 */
+	public static void setLogger(Logger l) {
+		logger = l;
+	}
+
+	public static Logger getLogger() {
+		return logger;
+	}
+
+	/**
+	 * Logs a verbose message, same signature as android.util.Log.v
+	 * @param tag
+	 * @param msg
+	 */
+	public static void v(String tag, String msg) {
+		logger.v(tag, msg);
+	}
+}
@@ -0,0 +1,22 @@
+package com.android.ui;
+
+/**
+ * A pair of integers, replaces android.graphics.Point in the maze core.
+ * Its single user is the RangeSet which uses it to communicate an interval [x,y].
+ * 
+ * @author adam
+ *
+ */
+public class MazePoint {
+	public int x, y;
+
+	/**
+	 * Constructor
+	 * @param px
+	 * @param py
+	 */
+	MazePoint(int px, int py) {
+		x = px;
+		y = py;
+	}
+}
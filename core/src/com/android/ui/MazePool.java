@@ -0,0 +1,150 @@
+package com.android.ui;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Keeps a small number of ready built mazes per skill level such that a new game can start without waiting for a build.
+ *
+ * Mazes are built in the background on an executor with a single thread of minimum priority, so the pool does not compete
+ * with the game for the processor. Taking a maze from the pool schedules a build that replaces it.
+ * The number of ready and scheduled mazes per skill level never exceeds the capacity, so the memory
+ * held by the pool is bounded by the capacity times the size of the mazes of the skill levels in use.
+ * Skill levels are only filled once they are requested with fill() or take().
+ * @author adam
+ *
+ */
+public class MazePool {
+	private final int capacity;
+	private final List<BlockingQueue<MazeResult>> ready; // ready mazes per skill level
+	private final AtomicIntegerArray pending; // ready plus scheduled mazes per skill level
+	private final ExecutorService executor;
+	private final AtomicLong hits = new AtomicLong();
+	private final AtomicLong misses = new AtomicLong();
+
+	/**
+	 * Constructor for a pool that builds on its own low priority thread
+	 * @param capacity number of mazes to keep per skill level
+	 */
+	public MazePool(int capacity) {
+		this(capacity, Executors.newSingleThreadExecutor(new ThreadFactory() {
+			@Override
+			public Thread newThread(Runnable r) {
+				Thread t = new Thread(r, "MazePool");
+				t.setDaemon(true);
+				t.setPriority(Thread.MIN_PRIORITY);
+				return t;
+			}
+		}));
+	}
+
+	/**
+	 * Constructor
+	 * @param capacity number of mazes to keep per skill level
+	 * @param executor runs the builds, shut down by shutdown()
+	 */
+	public MazePool(int capacity, ExecutorService executor) {
+		this.capacity = Math.max(1, capacity);
+		this.executor = executor;
+		int levels = Maze.skill_x.length;
+		ready = new ArrayList<BlockingQueue<MazeResult>>(levels);
+		for (int i = 0; i != levels; i++)
+			ready.add(new ArrayBlockingQueue<MazeResult>(this.capacity));
+		pending = new AtomicIntegerArray(levels);
+	}
+
+	/**
+	 * Schedules builds until the pool holds or will hold its capacity of mazes for the skill level
+	 * @param skill level of the mazes
+	 */
+	public void fill(int skill) {
+		while (true) {
+			int n = pending.get(skill);
+			if (n >= capacity)
+				return;
+			if (pending.compareAndSet(skill, n, n+1))
+				executor.execute(new Fill(skill));
+		}
+	}
+
+	/**
+	 * Takes a ready maze and schedules a build to replace it, never blocks
+	 * @param skill level of the maze
+	 * @return a new maze, null if none is ready
+	 */
+	public MazeResult take(int skill) {
+		MazeResult r = ready.get(skill).poll();
+		if (r != null) {
+			pending.decrementAndGet(skill);
+			hits.incrementAndGet();
+		}
+		else
+			misses.incrementAndGet();
+		fill(skill);
+		return r;
+	}
+
+	/**
+	 * Gives the number of ready mazes for a skill level
+	 */
+	public int available(int skill) {
+		return ready.get(skill).size();
+	}
+
+	/**
+	 * Gives the number of calls to take() that returned a maze
+	 */
+	public long getHits() {
+		return hits.get();
+	}
+
+	/**
+	 * Gives the number of calls to take() that found no ready maze
+	 */
+	public long getMisses() {
+		return misses.get();
+	}
+
+	/**
+	 * Stops all builds and drops the ready mazes
+	 */
+	public void shutdown() {
+		executor.shutdownNow();
+		for (BlockingQueue<MazeResult> q : ready)
+			q.clear();
+	}
+
+	/**
+	 * Builds a maze for a skill level and adds it to the pool
+	 */
+	private class Fill implements Runnable {
+		private final int skill;
+
+		Fill(int skill) {
+			this.skill = skill;
+		}
+
+		@Override
+		public void run() {
+			MazeResult r = null;
+			try {
+				int w = Maze.skill_x[skill];
+				int h = Maze.skill_y[skill];
+				int rooms = Maze.skill_rooms[skill];
+				MazeBuilder mb = MazeBuilderRegistry.getDefault().newBuilder(w, h, rooms);
+				r = mb.buildResult(w, h, rooms, Maze.skill_partct[skill]);
+			} catch (RuntimeException e) {
+				MazeLog.v("MazePool", "build for skill " + skill + " failed: " + e);
+			}
+			if (r == null || !ready.get(skill).offer(r))
+				pending.decrementAndGet(skill);
+		}
+	}
+}
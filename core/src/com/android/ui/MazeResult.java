@@ -0,0 +1,108 @@
+package com.android.ui;
+
+import java.util.ArrayDeque;
+import java.util.Vector;
+
+/**
+ * The output of a maze build: the cells, the solution, the start position and the BSP tree.
+ * A result is computed once by MazeBuilder.buildResult() and handed to a maze with deliver(),
+ * which allows to build mazes ahead of time on a different thread than the one that plays them.
+ * A result must be delivered to a single maze only as the maze keeps using and modifying its cells
+ * and marks the segments of the BSP tree as seen, copy() gives a result with cells, solution and tree of its own.
+ * The solution is derived from the builder's distances before the result is handed out,
+ * a build ahead of time takes this work off the thread that delivers the result.
+ * @author adam
+ *
+ */
+public final class MazeResult {
+	final BSPNode root;
+	final Cells cells;
+	final SolutionField solution;
+	final int startx, starty;
+	final int width, height;
+
+	MazeResult(BSPNode root, Cells cells, SolutionField solution, int startx, int starty, int width, int height) {
+		this.root = root;
+		this.cells = cells;
+		this.solution = solution;
+		this.startx = startx;
+		this.starty = starty;
+		this.width = width;
+		this.height = height;
+	}
+
+	/**
+	 * Fills the given maze with this result, the same call back a builder makes at the end of run()
+	 * @param m maze to be filled
+	 */
+	public void deliver(Maze m) {
+		m.mazew = width;
+		m.mazeh = height;
+		m.newMaze(root, cells, solution, startx, starty);
+	}
+
+	/**
+	 * Gives a result with a copy of the cells, the solution and the BSP tree, whose segments have not been seen.
+	 * Results that are copies of the same result can be played at the same time.
+	 * @param target empty cells of the same size that receive the copy
+	 * @return the copy
+	 */
+	public MazeResult copy(Cells target) {
+		cells.copyTo(target);
+		return new MazeResult(copy(root), target, solution.copy(), startx, starty, width, height);
+	}
+
+	/**
+	 * Copies a BSP tree with all its segments, recursive like MazeBuilder.genNodes()
+	 */
+	private static BSPNode copy(BSPNode n) {
+		if (n.isleaf) {
+			Vector<Seg> sl = ((BSPLeaf) n).slist;
+			Vector<Seg> copy = new Vector<Seg>(sl.size());
+			for (Seg se : sl)
+				copy.add(new Seg(se));
+			return new BSPLeaf(copy);
+		}
+		BSPBranch b = (BSPBranch) n;
+		return new BSPBranch(b.x, b.y, b.dx, b.dy, copy(b.lbranch), copy(b.rbranch));
+	}
+
+	/**
+	 * Gives the number of wall segments in the BSP tree
+	 */
+	int countSegments() {
+		int ct = 0;
+		ArrayDeque<BSPNode> stack = new ArrayDeque<BSPNode>();
+		stack.push(root);
+		while (!stack.isEmpty()) {
+			BSPNode n = stack.pop();
+			if (n.isleaf)
+				ct += ((BSPLeaf) n).slist.size();
+			else {
+				stack.push(((BSPBranch) n).lbranch);
+				stack.push(((BSPBranch) n).rbranch);
+			}
+		}
+		return ct;
+	}
+
+	public int getWidth() {
+		return width;
+	}
+
+	public int getHeight() {
+		return height;
+	}
+
+	public int getStartX() {
+		return startx;
+	}
+
+	public int getStartY() {
+		return starty;
+	}
+
+	public BSPNode getRoot() {
+		return root;
+	}
+}
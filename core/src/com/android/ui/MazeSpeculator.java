@@ -0,0 +1,179 @@
+package com.android.ui;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Builds the maze for the skill level the player is about to choose before the game is started.
+ *
+ * The title screen calls select() whenever the selected skill level changes. A build for another skill level
+ * is cancelled and a build for the new one is started in the background. When the game starts, take() hands over
+ * the result, waiting for the rest of the build if it has not finished yet, which hides most of the generation time.
+ * At most one build runs at a time. Builds run at minimum priority until a maze waits for them in take(),
+ * then the build continues at normal priority and reports its progress to that maze.
+ * @author adam
+ *
+ */
+public class MazeSpeculator {
+	private final ExecutorService executor;
+	private int skill = -1; // skill level of the current build, -1 if there is none
+	private Build build; // the current build, null if there is none
+
+	/**
+	 * Constructor for a speculator that builds on its own low priority thread
+	 */
+	public MazeSpeculator() {
+		this(Executors.newSingleThreadExecutor(new ThreadFactory() {
+			@Override
+			public Thread newThread(Runnable r) {
+				Thread t = new Thread(r, "MazeSpeculator");
+				t.setDaemon(true);
+				t.setPriority(Thread.MIN_PRIORITY);
+				return t;
+			}
+		}));
+	}
+
+	/**
+	 * Constructor
+	 * @param executor runs the builds, shut down by shutdown()
+	 */
+	public MazeSpeculator(ExecutorService executor) {
+		this.executor = executor;
+	}
+
+	/**
+	 * Starts to build a maze for the skill level unless such a build is running or finished already,
+	 * cancels a build for a different skill level
+	 * @param s selected skill level
+	 */
+	public synchronized void select(int s) {
+		if (s == skill && build != null)
+			return;
+		cancel();
+		skill = s;
+		build = new Build(s);
+		build.future = executor.submit(build);
+		MazeLog.v("MazeSpeculator", "building skill " + s);
+	}
+
+	/**
+	 * Cancels the current build if there is one
+	 */
+	public synchronized void cancel() {
+		if (build != null) {
+			build.builder.cancel();
+			build.future.cancel(true);
+		}
+		skill = -1;
+		build = null;
+	}
+
+	/**
+	 * Hands over the maze for the skill level, waits for the build to finish if necessary
+	 * @param s skill level of the game that starts
+	 * @return the maze, null if no build for the skill level has been started or the build failed
+	 */
+	public MazeResult take(int s) {
+		return take(s, null);
+	}
+
+	/**
+	 * Hands over the maze for the skill level, waits for the build to finish if necessary.
+	 * While it waits, the build runs at normal priority, reports its progress to the given maze
+	 * and is cancelled by Maze.cancelBuild().
+	 * @param s skill level of the game that starts
+	 * @param m maze that waits for the build, may be null
+	 * @return the maze, null if no build for the skill level has been started, the build failed or has been cancelled
+	 */
+	public MazeResult take(int s, Maze m) {
+		Build b;
+		synchronized (this) {
+			if (s != skill || build == null)
+				return null;
+			b = build;
+			skill = -1;
+			build = null;
+		}
+		Future<MazeResult> f = b.future;
+		if (m != null) {
+			b.builder.reportProgressTo(m);
+			m.await(f);
+		}
+		b.hurry();
+		try {
+			return f.get();
+		} catch (InterruptedException e) {
+			f.cancel(true);
+			Thread.currentThread().interrupt();
+		} catch (CancellationException e) {
+			// cancelled concurrently, the caller builds the maze itself unless the maze has been cancelled
+		} catch (ExecutionException e) {
+			MazeLog.v("MazeSpeculator", "build for skill " + s + " failed: " + e.getCause());
+		} finally {
+			if (m != null)
+				m.await(null);
+		}
+		return null;
+	}
+
+	/**
+	 * Cancels the current build and stops the thread
+	 */
+	public void shutdown() {
+		cancel();
+		executor.shutdownNow();
+	}
+
+	/**
+	 * Builds a maze for a skill level, at the priority of the executor's thread until a maze waits for it
+	 */
+	private static class Build implements Callable<MazeResult> {
+		private final int w, h, rooms, partct;
+		final MazeBuilder builder;
+		Future<MazeResult> future; // set once the build is submitted
+		private Thread thread; // thread that runs the build, null if it has not started or has finished
+		private int priority; // priority of that thread before the build
+		private boolean urgent; // true once a maze waits for the build
+
+		Build(int s) {
+			w = Maze.skill_x[s];
+			h = Maze.skill_y[s];
+			rooms = Maze.skill_rooms[s];
+			partct = Maze.skill_partct[s];
+			builder = MazeBuilderRegistry.getDefault().newBuilder(w, h, rooms);
+		}
+
+		@Override
+		public MazeResult call() {
+			synchronized (this) {
+				thread = Thread.currentThread();
+				priority = thread.getPriority();
+				if (urgent && priority < Thread.NORM_PRIORITY)
+					thread.setPriority(Thread.NORM_PRIORITY);
+			}
+			try {
+				return builder.buildResult(w, h, rooms, partct);
+			} finally {
+				synchronized (this) {
+					thread.setPriority(priority);
+					thread = null;
+				}
+			}
+		}
+
+		/**
+		 * Raises the priority of the build to the one of the game
+		 */
+		synchronized void hurry() {
+			urgent = true;
+			if (thread != null && thread.getPriority() < Thread.NORM_PRIORITY)
+				thread.setPriority(Thread.NORM_PRIORITY);
+		}
+	}
+}
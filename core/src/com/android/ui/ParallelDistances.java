@@ -0,0 +1,340 @@
+package com.android.ui;
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Computes the distances to the exit with a level synchronous breadth first search on a fork/join pool,
+ * for very large mazes. The result is the same as the one of the sequential search in MazeBuilder.computeDists(),
+ * as the distance of a cell is the number of the level in which it is reached, independent of the order within a level.
+ *
+ * Each level is expanded in one of three ways:
+ * <ul>
+ * <li>sequentially if the frontier is small, which is the common case in a maze with its long corridors,</li>
+ * <li>top down in parallel if the frontier is large: the frontier is split into ranges, each task visits the neighbors
+ * of its cells and collects the new cells in an int array of its own; a cell is claimed with a compare and set
+ * on a bitmap of visited cells such that it enters the next frontier once,</li>
+ * <li>bottom up in parallel if the frontier is large compared to the cells that have not been visited yet, e.g. in open areas:
+ * each task checks the unvisited cells of a range of words of the bitmap for a neighbor in the frontier,
+ * which is kept in a bitmap for this purpose.</li>
+ * </ul>
+ * Cells are identified by their index x*height + y, i.e. in the order of dists[x][y].
+ * @author adam
+ *
+ */
+public class ParallelDistances {
+	static final int PARALLEL_FRONTIER = 4096; // smaller frontiers are expanded sequentially
+	static final int CHUNK = 1024; // cells of the frontier per task for top down expansion
+	static final int CHUNK_WORDS = 256; // words of the bitmap per task for bottom up expansion
+	static final int BOTTOM_UP_RATIO = 14; // bottom up if the frontier is more than 1/14 of the unvisited cells
+
+	private final Cells cells;
+	private final int width, height, n;
+	private final int[][] dists;
+	private final AtomicLongArray visited; // bit per cell index
+	private long[] frontierBits; // frontier as a bitmap for bottom up expansion, allocated on demand
+	private int[] frontier; // cells of the current level
+	private int frontierSize;
+	private int[] spare; // buffer for the next level of a sequential expansion, swapped with frontier
+	private int parallelFrontier = PARALLEL_FRONTIER; // smaller frontiers are expanded sequentially
+	private int levels; // number of levels of the last search
+	private int bottomUpLevels, parallelLevels; // statistics of the last search
+
+	/**
+	 * Constructor
+	 * @param cells walls of the maze, only read
+	 * @param width width
+	 * @param height height
+	 * @param dists receives the distances
+	 */
+	public ParallelDistances(Cells cells, int width, int height, int[][] dists) {
+		this.cells = cells;
+		this.width = width;
+		this.height = height;
+		this.n = width*height;
+		this.dists = dists;
+		this.visited = new AtomicLongArray((n + 63) >>> 6);
+	}
+
+	/**
+	 * Computes the distances to the exit (ax,ay) which has distance 1
+	 * @param ax exit position, x coordinate
+	 * @param ay exit position, y coordinate
+	 * @param pool runs the tasks of large levels
+	 * @return index x*height + y of the cell with the greatest distance, the smallest index among cells of equal distance
+	 */
+	public int compute(int ax, int ay, ForkJoinPool pool) {
+		for (int x = 0; x != width; x++)
+			Arrays.fill(dists[x], 0, height, MazeBuilder.INF);
+		for (int w = 0; w != visited.length(); w++)
+			visited.set(w, 0);
+		levels = bottomUpLevels = parallelLevels = 0;
+		int start = ax*height + ay;
+		dists[ax][ay] = 1;
+		claim(start);
+		frontier = new int[] { start };
+		frontierSize = 1;
+		int unvisited = n - 1;
+		int d = 1;
+		int farthest = start;
+		while (frontierSize > 0) {
+			levels++;
+			// the last non empty level holds the cells with the greatest distance
+			farthest = frontier[0];
+			for (int k = 1; k < frontierSize; k++)
+				farthest = Math.min(farthest, frontier[k]);
+			if (frontierSize < parallelFrontier)
+				expandSequentially(d);
+			else if ((long) frontierSize * BOTTOM_UP_RATIO > unvisited) {
+				pool.invoke(new BottomUpLevel(d));
+				bottomUpLevels++;
+				parallelLevels++;
+			} else {
+				pool.invoke(new TopDownLevel(d));
+				parallelLevels++;
+			}
+			unvisited -= frontierSize;
+			d++;
+		}
+		return farthest;
+	}
+
+	/**
+	 * Sets the size of the smallest frontier that is expanded in parallel, 4096 by default
+	 */
+	public void setParallelFrontier(int size) {
+		parallelFrontier = Math.max(1, size);
+	}
+
+	/**
+	 * Gives the number of levels of the last search, i.e. the greatest distance
+	 */
+	public int getLevels() {
+		return levels;
+	}
+
+	/**
+	 * Gives the number of levels of the last search that were expanded in parallel
+	 */
+	public int getParallelLevels() {
+		return parallelLevels;
+	}
+
+	/**
+	 * Gives the number of levels of the last search that were expanded bottom up
+	 */
+	public int getBottomUpLevels() {
+		return bottomUpLevels;
+	}
+
+	/**
+	 * Marks a cell as visited
+	 * @return true if it has not been visited before
+	 */
+	private boolean claim(int i) {
+		int w = i >>> 6;
+		long bit = 1L << i;
+		while (true) {
+			long old = visited.get(w);
+			if ((old & bit) != 0)
+				return false;
+			if (visited.compareAndSet(w, old, old | bit))
+				return true;
+		}
+	}
+
+	private boolean isVisited(int i) {
+		return (visited.get(i >>> 6) & (1L << i)) != 0;
+	}
+
+	/**
+	 * Visits the neighbors of cell i at distance d, appends newly reached cells to next
+	 * @return the new size of next
+	 */
+	private int expandCell(int i, int d, int[] next, int size) {
+		int x = i / height;
+		int y = i - x*height;
+		for (int dir = 0; dir != 4; dir++) {
+			int j = cells.neighbor(x, y, dir);
+			if (j >= 0 && !isVisited(j) && claim(j)) {
+				int nx = j / height;
+				dists[nx][j - nx*height] = d+1;
+				next[size++] = j;
+			}
+		}
+		return size;
+	}
+
+	private void expandSequentially(int d) {
+		// each cell has at most 3 neighbors besides the one it has been reached from, 4 for the exit
+		int[] next = spare;
+		if (next == null || next.length < 4*frontierSize)
+			next = new int[Math.max(4*frontierSize, 1024)];
+		int size = 0;
+		for (int k = 0; k != frontierSize; k++)
+			size = expandCell(frontier[k], d, next, size);
+		spare = frontier;
+		frontier = next;
+		frontierSize = size;
+	}
+
+	/**
+	 * Appends the cells of the next level of all tasks to a new frontier
+	 */
+	private void collect(int[][] parts, int[] sizes) {
+		int total = 0;
+		for (int t = 0; t != sizes.length; t++)
+			total += sizes[t];
+		int[] next = new int[Math.max(1, total)];
+		int pos = 0;
+		for (int t = 0; t != sizes.length; t++) {
+			System.arraycopy(parts[t], 0, next, pos, sizes[t]);
+			pos += sizes[t];
+		}
+		frontier = next;
+		frontierSize = total;
+	}
+
+	/**
+	 * Expands a level top down, task t handles the frontier cells from t*CHUNK on
+	 */
+	private class TopDownLevel extends RecursiveAction {
+		private static final long serialVersionUID = 1L;
+		private final int d;
+
+		TopDownLevel(int d) {
+			this.d = d;
+		}
+
+		@Override
+		protected void compute() {
+			int tasks = (frontierSize + CHUNK - 1) / CHUNK;
+			int[][] parts = new int[tasks][];
+			int[] sizes = new int[tasks];
+			new TopDownRange(d, 0, tasks, parts, sizes).invoke();
+			collect(parts, sizes);
+		}
+	}
+
+	private class TopDownRange extends RecursiveAction {
+		private static final long serialVersionUID = 1L;
+		private final int d, lo, hi;
+		private final int[][] parts;
+		private final int[] sizes;
+
+		TopDownRange(int d, int lo, int hi, int[][] parts, int[] sizes) {
+			this.d = d;
+			this.lo = lo;
+			this.hi = hi;
+			this.parts = parts;
+			this.sizes = sizes;
+		}
+
+		@Override
+		protected void compute() {
+			if (hi - lo > 1) {
+				int mid = (lo + hi) >>> 1;
+				invokeAll(new TopDownRange(d, lo, mid, parts, sizes), new TopDownRange(d, mid, hi, parts, sizes));
+				return;
+			}
+			int from = lo*CHUNK;
+			int to = Math.min(frontierSize, from + CHUNK);
+			int[] next = new int[4*(to - from)];
+			int size = 0;
+			for (int k = from; k != to; k++)
+				size = expandCell(frontier[k], d, next, size);
+			parts[lo] = next;
+			sizes[lo] = size;
+		}
+	}
+
+	/**
+	 * Expands a level bottom up, task t handles the cells of the words from t*CHUNK_WORDS on
+	 */
+	private class BottomUpLevel extends RecursiveAction {
+		private static final long serialVersionUID = 1L;
+		private final int d;
+
+		BottomUpLevel(int d) {
+			this.d = d;
+		}
+
+		@Override
+		protected void compute() {
+			int words = visited.length();
+			if (frontierBits == null)
+				frontierBits = new long[words];
+			else
+				Arrays.fill(frontierBits, 0);
+			for (int k = 0; k != frontierSize; k++)
+				frontierBits[frontier[k] >>> 6] |= 1L << frontier[k];
+			int tasks = (words + CHUNK_WORDS - 1) / CHUNK_WORDS;
+			int[][] parts = new int[tasks][];
+			int[] sizes = new int[tasks];
+			new BottomUpRange(d, 0, tasks, parts, sizes).invoke();
+			collect(parts, sizes);
+		}
+	}
+
+	private class BottomUpRange extends RecursiveAction {
+		private static final long serialVersionUID = 1L;
+		private final int d, lo, hi;
+		private final int[][] parts;
+		private final int[] sizes;
+
+		BottomUpRange(int d, int lo, int hi, int[][] parts, int[] sizes) {
+			this.d = d;
+			this.lo = lo;
+			this.hi = hi;
+			this.parts = parts;
+			this.sizes = sizes;
+		}
+
+		@Override
+		protected void compute() {
+			if (hi - lo > 1) {
+				int mid = (lo + hi) >>> 1;
+				invokeAll(new BottomUpRange(d, lo, mid, parts, sizes), new BottomUpRange(d, mid, hi, parts, sizes));
+				return;
+			}
+			int w0 = lo*CHUNK_WORDS;
+			int w1 = Math.min(visited.length(), w0 + CHUNK_WORDS);
+			int[] next = new int[64*(w1 - w0)];
+			int size = 0;
+			for (int w = w0; w != w1; w++) {
+				long unvisited = ~visited.get(w);
+				long reached = 0;
+				while (unvisited != 0) {
+					int b = Long.numberOfTrailingZeros(unvisited);
+					unvisited &= unvisited - 1;
+					int i = (w << 6) + b;
+					if (i >= n)
+						break;
+					if (hasFrontierNeighbor(i)) {
+						dists[i / height][i % height] = d+1;
+						reached |= 1L << b;
+						next[size++] = i;
+					}
+				}
+				// the words of this range belong to this task, no other task changes them in this level
+				if (reached != 0)
+					visited.set(w, visited.get(w) | reached);
+			}
+			parts[lo] = next;
+			sizes[lo] = size;
+		}
+
+		private boolean hasFrontierNeighbor(int i) {
+			int x = i / height;
+			int y = i - x*height;
+			for (int dir = 0; dir != 4; dir++) {
+				int j = cells.neighbor(x, y, dir);
+				if (j >= 0 && (frontierBits[j >>> 6] & (1L << j)) != 0)
+					return true;
+			}
+			return false;
+		}
+	}
+}
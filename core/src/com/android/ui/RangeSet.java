@@ -1,7 +1,5 @@
 package com.android.ui;
 
-//import java.awt.Point;
-import android.graphics.*;
 import java.util.Vector;
 
 /**
@@ -94,7 +92,7 @@ public class RangeSet {
 	 * @param p describes interval [p.x,p.y], its entries are modified to represent the intersection if there is one
 	 * @return true if there is an intersection, false otherwise
 	 */
-	public boolean intersect(Point p) {
+	public boolean intersect(MazePoint p) {
 		// "p" isn't (strictly speaking) a point, but I need to return two
 		// values here, and can't find a nicer way to do it.
 		int min = p.x;
@@ -0,0 +1,108 @@
+package com.android.ui;
+
+import java.util.Arrays;
+
+/**
+ * Keeps track of the rectangles that are occupied by rooms such that a test whether an area
+ * overlaps with any room does not need to look at every cell of the area.
+ *
+ * The maze is divided into buckets of 16x16 cells, each bucket holds a linked list of the rooms that touch it.
+ * Rooms do not overlap, so a bucket only holds a few rooms and a test for a small area
+ * looks at a constant number of buckets and rooms, independent of the total number of rooms.
+ * Lists are kept in int arrays to avoid an object per entry.
+ *
+ * @author adam
+ *
+ */
+class RoomIndex {
+	private static final int BUCKET_SHIFT = 4;
+
+	private final int bucketsPerRow;
+	private final int bucketRows;
+	private int[] head; // first entry per bucket plus one, 0 for an empty bucket, allocated on first add
+	private int[] next; // next entry in the same bucket plus one
+	private int[] entryRoom; // room of an entry
+	private int entries;
+	private int[] rects = new int[64]; // x0, y0, x1, y1 per room
+	private int rooms;
+
+	/**
+	 * Constructor
+	 * @param w width of the maze
+	 * @param h height of the maze
+	 */
+	RoomIndex(int w, int h) {
+		bucketsPerRow = (w >>> BUCKET_SHIFT) + 1;
+		bucketRows = (h >>> BUCKET_SHIFT) + 1;
+	}
+
+	/**
+	 * Removes all rooms
+	 */
+	void clear() {
+		head = null;
+		next = entryRoom = null;
+		entries = rooms = 0;
+	}
+
+	/**
+	 * Gives the number of rooms
+	 */
+	int size() {
+		return rooms;
+	}
+
+	private int bucketX(int x) {
+		return Math.max(0, Math.min(bucketsPerRow-1, x >> BUCKET_SHIFT));
+	}
+
+	private int bucketY(int y) {
+		return Math.max(0, Math.min(bucketRows-1, y >> BUCKET_SHIFT));
+	}
+
+	/**
+	 * Adds the rectangle (x0,y0) to (x1,y1), both corners inclusive
+	 */
+	void add(int x0, int y0, int x1, int y1) {
+		if (head == null) {
+			head = new int[bucketsPerRow * bucketRows];
+			next = new int[64];
+			entryRoom = new int[64];
+		}
+		if (rooms*4 == rects.length)
+			rects = Arrays.copyOf(rects, rects.length*2);
+		int r = rooms++;
+		rects[r*4] = x0;
+		rects[r*4+1] = y0;
+		rects[r*4+2] = x1;
+		rects[r*4+3] = y1;
+		for (int by = bucketY(y0); by <= bucketY(y1); by++)
+			for (int bx = bucketX(x0); bx <= bucketX(x1); bx++) {
+				if (entries == next.length) {
+					next = Arrays.copyOf(next, entries*2);
+					entryRoom = Arrays.copyOf(entryRoom, entries*2);
+				}
+				int b = by*bucketsPerRow + bx;
+				entryRoom[entries] = r;
+				next[entries] = head[b];
+				head[b] = ++entries;
+			}
+	}
+
+	/**
+	 * Checks if any room intersects the rectangle (x0,y0) to (x1,y1), both corners inclusive
+	 */
+	boolean overlaps(int x0, int y0, int x1, int y1) {
+		if (head == null)
+			return false;
+		for (int by = bucketY(y0); by <= bucketY(y1); by++)
+			for (int bx = bucketX(x0); bx <= bucketX(x1); bx++) {
+				for (int e = head[by*bucketsPerRow + bx]; e != 0; e = next[e-1]) {
+					int r = entryRoom[e-1]*4;
+					if (rects[r] <= x1 && x0 <= rects[r+2] && rects[r+1] <= y1 && y0 <= rects[r+3])
+						return true;
+				}
+			}
+		return false;
+	}
+}
@@ -4,8 +4,6 @@
 package com.android.ui;
 
 
-import android.graphics.*;
-
 /**
  * 
  * This code is refactored code from Maze.java by Paul Falstad, www.falstad.com, Copyright (C) 1998, all rights reserved
@@ -39,15 +37,30 @@ public class Seg {
 		int part2 = ((dist >> 3) ^ cc) % 6;
 		int val1 = ((part1 + 2 + add) * 70)/8 + 80;
 		switch (part2) {
-		case 0: col = Color.rgb(val1, 20, 20); break;
-		case 1: col = Color.rgb(20, val1, 20); break;
-		case 2: col = Color.rgb(20, 20, val1); break;
-		case 3: col = Color.rgb(val1, val1, 20); break;
-		case 4: col = Color.rgb(20, val1, val1); break;
-		case 5: col = Color.rgb(val1, 20, val1); break;
+		case 0: col = MazeColor.rgb(val1, 20, 20); break;
+		case 1: col = MazeColor.rgb(20, val1, 20); break;
+		case 2: col = MazeColor.rgb(20, 20, val1); break;
+		case 3: col = MazeColor.rgb(val1, val1, 20); break;
+		case 4: col = MazeColor.rgb(20, val1, val1); break;
+		case 5: col = MazeColor.rgb(val1, 20, val1); break;
 		}
 	}
 
+	/**
+	 * Copy constructor, the copy has not been seen
+	 * @param se segment to copy
+	 */
+	Seg(Seg se) {
+		x = se.x;
+		y = se.y;
+		dx = se.dx;
+		dy = se.dy;
+		dist = se.dist;
+		col = se.col;
+		partition = se.partition;
+		seen = false;
+	}
+
 	int getDir() {
 		if (dx != 0)
 			return (dx < 0) ? 1 : -1;
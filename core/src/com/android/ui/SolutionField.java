@@ -0,0 +1,171 @@
+package com.android.ui;
+
+/**
+ * The solution of a maze in a compact form: for each cell the direction of the neighbor that is one step closer to the exit,
+ * packed into 2 bits, and the distance to the exit in a char plus, for mazes with long paths, a byte.
+ *
+ * The direction is an index into MazeBuilder.dirsx and dirsy and is the first direction without a wall towards a neighbor
+ * with a smaller distance, the same choice the solvers made by probing all four neighbors of the int[][] distances.
+ * The exit cell, which has distance 1, points through its opening to the outside if the exit has been opened.
+ *
+ * The char holds the lower 16 bits of the distance. The byte with the upper 8 bits is only allocated once a distance
+ * exceeds 65535, so the mazes of the game take 18 bits per cell and mazes with longer paths 26 bits.
+ * A cell further away than 16777214 holds all ones and its distance is computed on demand
+ * by following the directions towards the exit until a cell with a stored distance is reached.
+ * Cells that cannot reach the exit hold 0 and have a distance of 99999999 like in MazeBuilder.computeDists.
+ *
+ * Cells are stored in row-major order like in Cells. A next step or a distance is a single lookup.
+ * A maze keeps this field in place of the int[][] distances of the builder, which it drops once the field is derived,
+ * and DistanceRepair keeps the field up to date when walls change during play.
+ * @author adam
+ *
+ */
+public class SolutionField {
+	private static final int UNREACHABLE = 0;
+	private static final int LARGE = 0xffffff; // distance to be computed by following directions
+
+	/**
+	 * Distances to the exit per cell, the input from which directions are derived
+	 */
+	interface Distances {
+		int get(int x, int y);
+	}
+
+	// the arrays are written and read as they are by MazeFile
+	private final int width, height;
+	final long[] dirs; // 2 bits per cell, 32 cells per word
+	final char[] dist; // lower 16 bits of the distance per cell, UNREACHABLE or LARGE
+	byte[] high; // upper 8 bits of the distance per cell, null as long as all distances fit into a char
+
+	/**
+	 * Derives the field from the distances computed by the builder
+	 * @param cells walls of the maze
+	 * @param dists distances to the exit as computed by MazeBuilder.computeDists
+	 * @param width width
+	 * @param height height
+	 */
+	public SolutionField(Cells cells, final int[][] dists, int width, int height) {
+		this.width = width;
+		this.height = height;
+		int n = width*height;
+		dirs = new long[(n + 31) >>> 5];
+		dist = new char[n];
+		Distances d = new Distances() {
+			@Override
+			public int get(int x, int y) {
+				return dists[x][y];
+			}
+		};
+		for (int y = 0; y != height; y++)
+			for (int x = 0; x != width; x++)
+				update(cells, d, x, y);
+	}
+
+	/**
+	 * Constructor for a field that has been derived before, takes the arrays as they are
+	 * @param dirs 2 bits per cell, (width*height + 31)/32 words
+	 * @param dist width*height chars
+	 * @param high width*height bytes or null
+	 */
+	SolutionField(int width, int height, long[] dirs, char[] dist, byte[] high) {
+		this.width = width;
+		this.height = height;
+		this.dirs = dirs;
+		this.dist = dist;
+		this.high = high;
+	}
+
+	/**
+	 * Gives a copy that changes independently of this field
+	 */
+	SolutionField copy() {
+		return new SolutionField(width, height, dirs.clone(), dist.clone(), (high == null) ? null : high.clone());
+	}
+
+	/**
+	 * Derives direction and distance of a single cell again, for a maze whose walls and distances have changed.
+	 * The direction of a cell depends on the distances of its neighbors, so the neighbors of a cell
+	 * with a new distance need an update as well. The given distances must not be read from this field
+	 * while it is updated, since a distance that is computed on demand follows directions that may be outdated.
+	 * @param cells walls of the maze
+	 * @param dists current distances to the exit
+	 * @param x coordinate of the cell
+	 * @param y coordinate of the cell
+	 */
+	void update(Cells cells, Distances dists, int x, int y) {
+		int d = dists.get(x, y);
+		int i = x + y*width;
+		int v = (d >= MazeBuilder.INF) ? UNREACHABLE : Math.min(d, LARGE);
+		dist[i] = (char) v;
+		if (high == null && v > 0xffff)
+			high = new byte[dist.length];
+		if (high != null)
+			high[i] = (byte) (v >>> 16);
+		setDirection(i, 0);
+		int[] masks = Cells.getMasks();
+		for (int dir = 0; dir != 4; dir++) {
+			if (cells.hasMaskedBitsTrue(x, y, masks[dir]))
+				continue;
+			int nx = x + MazeBuilder.dirsx[dir];
+			int ny = y + MazeBuilder.dirsy[dir];
+			boolean outside = nx < 0 || ny < 0 || nx >= width || ny >= height;
+			if (outside ? d == 1 : dists.get(nx, ny) < d) {
+				setDirection(i, dir);
+				break;
+			}
+		}
+	}
+
+	private void setDirection(int i, int dir) {
+		int shift = (i & 31) << 1;
+		dirs[i >>> 5] = (dirs[i >>> 5] & ~(3L << shift)) | ((long) dir << shift);
+	}
+
+	/**
+	 * Gives the direction of the next step towards the exit
+	 * @return index into MazeBuilder.dirsx and dirsy
+	 */
+	public int getDirection(int x, int y) {
+		int i = x + y*width;
+		return (int) (dirs[i >>> 5] >>> ((i & 31) << 1)) & 3;
+	}
+
+	/**
+	 * Gives the distance to the exit, the exit cell has distance 1
+	 * @return distance, 99999999 if the cell cannot reach the exit
+	 */
+	public int getDistance(int x, int y) {
+		int d = stored(x + y*width);
+		if (d == UNREACHABLE)
+			return MazeBuilder.INF;
+		int steps = 0;
+		while (d == LARGE) {
+			int dir = getDirection(x, y);
+			x += MazeBuilder.dirsx[dir];
+			y += MazeBuilder.dirsy[dir];
+			d = stored(x + y*width);
+			steps++;
+		}
+		return d + steps;
+	}
+
+	private int stored(int i) {
+		byte[] h = high;
+		return (h == null) ? dist[i] : dist[i] | (h[i] & 0xff) << 16;
+	}
+
+	/**
+	 * Tells if the cell is next to the exit
+	 */
+	public boolean isExit(int x, int y) {
+		return stored(x + y*width) == 1;
+	}
+
+	public int getWidth() {
+		return width;
+	}
+
+	public int getHeight() {
+		return height;
+	}
+}
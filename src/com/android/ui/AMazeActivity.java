@@ -11,7 +11,8 @@ import android.widget.*;
 import android.widget.AdapterView.OnItemSelectedListener;
 
 /** The Landing screen on the Android app, prompts user for
- * skill level and operation mode
+ * skill level and operation mode.
+ * The maze for the selected skill level is built in the background while the user is still on this screen.
  * @author adam
  *
  */
@@ -52,12 +53,13 @@ public class AMazeActivity extends Activity {
 		        	default: skill = 0; break;
 		        }
 		        Log.v(TAG, "skill = " + skill);
-		        
+		        speculate();
 		    }
 
 		    @Override
 		    public void onNothingSelected(AdapterView<?> parentView) {
 		        skill = 0;
+		        speculate();
 		    }
 
 		});
@@ -111,4 +113,16 @@ public class AMazeActivity extends Activity {
 
 	}
 
+	/**
+	 * Starts to build the maze for the selected skill level unless the pool has one ready,
+	 * and lets the pool build mazes for the games that follow at this skill level
+	 */
+	private void speculate() {
+		if (Globals.pool.available(skill) > 0)
+			Globals.speculator.cancel();
+		else
+			Globals.speculator.select(skill);
+		Globals.pool.fill(skill);
+	}
+
 }
@@ -0,0 +1,18 @@
+package com.android.ui;
+
+import android.util.Log;
+
+/**
+ * Forwards log messages of the maze core to android.util.Log.
+ * Installed by Globals before any maze is built.
+ * @author adam
+ *
+ */
+public class AndroidLogger implements MazeLog.Logger {
+
+	@Override
+	public void v(String tag, String msg) {
+		Log.v(tag, msg);
+	}
+
+}
@@ -75,7 +75,7 @@ public class BasicRobot implements Robot {
 					b4 = true;
 		
 			if(b1 || b2 || b3 || b4)
-				if(Globals.maze.mazedists[Globals.maze.px][Globals.maze.py] == 0){
+				if(Globals.maze.solution.getDistance(Globals.maze.px, Globals.maze.py) == 0){
 					
 					return true;
 					
@@ -12,5 +12,14 @@ public class Globals {
 	public static Maze maze = new Maze();
 	public static GraphicsWrapper gw = new GraphicsWrapper();
 	public static MapView mv;
+	// mazes built ahead of time, two per skill level in use
+	public static MazePool pool = new MazePool(2);
+	// builds the maze for the skill level selected on the title screen
+	public static MazeSpeculator speculator = new MazeSpeculator();
 	
+	static {
+		// route log messages of the maze core to android.util.Log
+		MazeLog.setLogger(new AndroidLogger());
+		maze.setGraphics(gw);
+	}
 }
@@ -21,7 +21,7 @@ import java.awt.Graphics;
  * @author adam
  *
  */
-public class GraphicsWrapper {
+public class GraphicsWrapper implements MazeGraphics {
 	
 	int color;
 	Rect rectangle;
@@ -48,6 +48,7 @@ public class GraphicsWrapper {
 	}
 	
 
+	@Override
 	public void setColor(int color) {
 
 		paint.setColor(color);
@@ -62,6 +63,7 @@ public class GraphicsWrapper {
 	
 
 	
+	@Override
 	public void fillPolygon(int[] a, int b[], int c){
 		path = new Path();
 		int x, y;
@@ -99,10 +101,12 @@ public class GraphicsWrapper {
 		return color;
 	}
 
+	@Override
 	public void drawLine(int nx1, int ny1, int nx2, int ny12) {
 		canvas.drawLine(nx1, ny1, nx2, ny12, paint);	
 	}
 
+	@Override
 	public void fillOval(int i, int j, int cirsiz, int cirsiz2) {
 		//canvas.drawOval(oval, paint);
 		
@@ -6,7 +6,6 @@ import android.app.Activity;
 import android.content.Intent;
 import android.os.Bundle;
 import android.os.Handler;
-import android.os.Message;
 import android.view.KeyEvent;
 import android.view.View;
 import android.widget.*;
@@ -17,7 +16,10 @@ import android.util.Log;
 /**
  * This activity consists of the screen which is shown whenever the maze is being 
  * generated, the maze generation is run in a seperate thread using Asynctask.
- * The UI is updated during the generation in the form of a progress bar.
+ * A maze that is ready in the pool of Globals is used right away, otherwise the maze waits for the build
+ * that has been started on the title screen and shows its progress.
+ * The UI is updated during the generation in the form of a progress bar that polls the progress of the maze.
+ * Going back cancels the generation.
  * @author adam
  *
  */
@@ -28,13 +30,22 @@ public class MazeBuilderActivity extends Activity implements View.OnKeyListener
 	Button btn;
 	int skill;
 	int mode;
-	Maze maze;
+	volatile Maze maze;
+	boolean building;
 	
-	Handler handler = new Handler() {
+	Handler handler = new Handler();
+
+	/** Polls the progress of the maze while it is being built **/
+	Runnable pollProgress = new Runnable() {
 
 		@Override
-		public void handleMessage(Message msg) {
-			bar.incrementProgressBy(5);
+		public void run() {
+			if (!building)
+				return;
+			Maze m = maze;
+			if (m != null)
+				bar.setProgress(m.getPercentDone());
+			handler.postDelayed(this, 100);
 		}
 	};
 
@@ -51,7 +62,9 @@ public class MazeBuilderActivity extends Activity implements View.OnKeyListener
 		
 		Log.v("SKILLLEVEL","" + skill);
 
+		building = true;
 		new BuildMazeTask().execute();
+		handler.post(pollProgress);
 		
 
 	}
@@ -60,27 +73,25 @@ public class MazeBuilderActivity extends Activity implements View.OnKeyListener
 	class BuildMazeTask extends AsyncTask<Integer, Void, Void> {
 		@Override
 		protected Void doInBackground(Integer... params) {
-			Globals.maze = new Maze();
-			publishProgress();
-			Globals.maze.init();
-			publishProgress();
-			Globals.maze.build(skill);
-			if(Globals.maze.mapdrawer == null)
+			Maze m = new Maze();
+			m.setGraphics(Globals.gw);
+			m.init();
+			Globals.maze = m;
+			maze = m;
+			m.build(skill, Globals.pool, Globals.speculator);
+			if(m.mapdrawer == null)
 				Log.v("NULL", "MAPDRAWER");
-			publishProgress();
-			Log.v(TAG, "width " + Globals.maze.mazew);
+			Log.v(TAG, "width " + m.mazew);
 			
 			return (null);
 		}
 
-		@Override
-		protected void onProgressUpdate(Void... unused) {
-			bar.incrementProgressBy(33);
-		}
-
 		@Override
 		protected void onPostExecute(Void unused) {
-			
+			building = false;
+			if (maze.state != Maze.STATE_PLAY)
+				return; // cancelled
+			bar.setProgress(100);
 
 			btn = new Button(MazeBuilderActivity.this);
 			btn.setHeight(40);
@@ -113,6 +124,10 @@ public class MazeBuilderActivity extends Activity implements View.OnKeyListener
 		super.onKeyDown(keyCode, event);
 		switch (keyCode) {
 		case KeyEvent.KEYCODE_BACK:
+			building = false;
+			Maze m = maze;
+			if (m != null)
+				m.cancelBuild();
 			Intent i = new Intent(MazeBuilderActivity.this, AMazeActivity.class);
 			startActivity(i);
 		}
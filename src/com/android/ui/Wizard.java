@@ -1,13 +1,11 @@
 package com.android.ui;
 
 
-import java.util.HashMap;
-
 import android.util.Log;
 
 /**
  * The Wizard is a wall follower method that has available
- * to it the distance-from-exit values for each square in the maze.
+ * to it the direction towards the exit for each square in the maze.
  * So it walks along the shortest possible path until it reaches the exit.
  * @author adam
  *
@@ -19,7 +17,6 @@ public class Wizard implements RobotDriver {
 	Maze maze;
 	int [] position;
 	int [] direction;
-	HashMap<String, Integer> hash = new HashMap<String, Integer>(Globals.maze.mazeh*Globals.maze.mazew);
 	@Override
 	public void setRobot(Robot r) throws UnsuitableRobotException {
 		br = r;
@@ -34,19 +31,12 @@ public class Wizard implements RobotDriver {
 	public boolean drive2Exit() throws Exception {
 		
 		
-		int forward;
-		int backward;
-		int right;
-		int left;
 		while(!br.isAtGoal() && !br.hasStopped()){
 			
 			position = br.getCurrentPosition();
 			direction = br.getCurrentDirection();
 			
-			String pos = position[0] + "-" + position[1];
-			hash.put(pos, 1);
-			
-			if(Globals.maze.mazedists[position[0]][position[1]] == 1){
+			if(Globals.maze.solution.isExit(position[0], position[1])){
 				Log.v("at 1 position", "now");
 				if(br.canSeeGoalAhead()){
 					br.move(1, true);
@@ -76,38 +66,20 @@ public class Wizard implements RobotDriver {
 				}
 			}
 			
-			forward = distanceVal(1);
-			backward = distanceVal(-1);
-			left = distanceVal(2);
-			right = distanceVal(-2);
-			//forward = SquareVisited(position, direction, 1 );
-			//backward = SquareVisited(position, direction, -1 );
-			//right = SquareVisited(position, direction, 2 );
-			//left = SquareVisited(position, direction, -2 );
-			
-		
-			int solDist = Integer.MAX_VALUE;
 			int choice = -1;
 		
 			if(3*br.getEnergyForStepForward() < br.getCurrentBatteryLevel()){
-				
-				
-				if(br.distanceToObstacleAhead() > 0 && forward < solDist){
+				// the solution gives the step towards the exit, turn it into a move relative to the robot
+				int next = Globals.maze.solution.getDirection(position[0], position[1]);
+				int ahead = directionIndex(direction);
+				if (next == ahead)
 					choice = 0;
-					solDist = forward;
-				}
-				if(br.distanceToObstacleBehind() > 0 && backward < solDist){
+				else if (next == ((ahead+2) & 3))
 					choice = 1;
-					solDist = backward;
-				}
-				if(br.distanceToObstacleOnRight() > 0 && right < solDist){
+				else if (next == ((ahead+1) & 3))
+					choice = 3; // left, the direction after Maze.rotate(1)
+				else
 					choice = 2;
-					solDist = right;
-				}
-				if(br.distanceToObstacleOnLeft() > 0 && left < solDist){
-					choice = 3;
-					solDist = left;
-				}
 				
 				System.out.println("choice: " + choice);
 				//move after choice
@@ -156,42 +128,14 @@ public class Wizard implements RobotDriver {
 		return false;
 	}
 
-	private int distanceVal(int i) {
-		String pos = "";
-		int x, y;
-		if(i == 1 || i == -1){
-			x = position[0] + i*direction[0];
-			y = position[1] +i*direction[1];
-			if(x < Globals.maze.mazew && y < Globals.maze.mazew && x >=0 && y >=0){
-				pos = x + "-" + y; 
-				if(!hash.containsKey(pos)){
-					return Globals.maze.mazedists[x][y];
-				}
-			}
-		
-			return Integer.MAX_VALUE;
-		}
-		else if(i == 2 || i == -2){
-			Globals.maze.rotate(1);
-			i = i/2;
-			x = Globals.maze.px + i*Globals.maze.dx;
-			y = Globals.maze.py + i*Globals.maze.dy;
-			Globals.maze.rotate(-1);
-			if(x < Globals.maze.mazew && y < Globals.maze.mazew && x >=0 && y >=0){
-				pos = x + "-" + y;
-				if(!hash.containsKey(pos)){
-					return Globals.maze.mazedists[x][y];
-				}
-				else{
-					
-				}
-			}
-			return Integer.MAX_VALUE;
-			
-		}
-		else{
-			return Integer.MAX_VALUE;
-		}
+	/**
+	 * Gives the index into MazeBuilder.dirsx and dirsy of a direction vector
+	 */
+	private static int directionIndex(int[] d) {
+		for (int i = 0; i != 4; i++)
+			if (MazeBuilder.dirsx[i] == d[0] && MazeBuilder.dirsy[i] == d[1])
+				return i;
+		return 0;
 	}
 
 	@Override